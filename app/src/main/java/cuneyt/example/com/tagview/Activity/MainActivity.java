@@ -22,6 +22,7 @@ import java.util.ArrayList;
 
 import cuneyt.example.com.tagview.Constants;
 import cuneyt.example.com.tagview.Models.TagClass;
+import cuneyt.example.com.tagview.Models.TagPrefixIndex;
 import cuneyt.example.com.tagview.R;
 
 public class MainActivity extends AppCompatActivity {
@@ -35,6 +36,11 @@ public class MainActivity extends AppCompatActivity {
      */
     private ArrayList<TagClass> tagList;
 
+    /**
+     * prefix search over the country names, keeps the tag item of each country
+     */
+    private TagPrefixIndex tagIndex;
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -114,6 +120,19 @@ public class MainActivity extends AppCompatActivity {
             e.printStackTrace();
         }
 
+        tagIndex = new TagPrefixIndex(tagList, new TagPrefixIndex.ItemFactory() {
+            @Override
+            public TagItem createItem(TagClass tag, int position) {
+                TagItem tagItem = new TagItem(getBaseContext(), tag.getName());
+                // the country code lets TagView keep the views of countries still matching
+                tagItem.setKey(tag.getSinif());
+                tagItem.setBorderRadius(10f);
+                tagItem.setLayoutColor(Color.parseColor(tag.getColor()));
+                if (position % 2 == 0) // you can set deletable or not
+                    tagItem.setDeletable(true);
+                return tagItem;
+            }
+        });
     }
 
     private void setTags(CharSequence cs) {
@@ -125,21 +144,8 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        String text = cs.toString();
         ArrayList<TagItem> tagItems = new ArrayList<>();
-        TagItem tagItem;
-
-
-        for (int i = 0; i < tagList.size(); i++) {
-            if (tagList.get(i).getName().toLowerCase().startsWith(text.toLowerCase())) {
-                tagItem = new TagItem(getBaseContext(),tagList.get(i).getName());
-                tagItem.setBorderRadius(10f);
-                tagItem.setLayoutColor(Color.parseColor(tagList.get(i).getColor()));
-                if (i % 2 == 0) // you can set deletable or not
-                    tagItem.setDeletable(true);
-                tagItems.add(tagItem);
-            }
-        }
+        tagIndex.findItems(cs, tagItems);
         tagGroup.add(tagItems);
 
     }
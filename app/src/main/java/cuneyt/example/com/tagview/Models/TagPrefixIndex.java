@@ -0,0 +1,156 @@
+package cuneyt.example.com.tagview.Models;
+
+import com.cunoraz.tagview.TagItem;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prefix search over {@link TagClass} names. Names are lower cased once and sorted, a query
+ * finds its matches with two binary searches, so a lookup costs O(log n + k) for k matches.
+ * The tag item of an entry is created on its first match and reused afterwards.
+ */
+public class TagPrefixIndex {
+
+    /**
+     * creates the tag item shown for an entry
+     */
+    public interface ItemFactory {
+
+        /**
+         * @param tag      entry of the index
+         * @param position position of the entry in the list the index was built from
+         * @return tag item for the entry
+         */
+        TagItem createItem(TagClass tag, int position);
+    }
+
+    /**
+     * lower cased names in ascending order
+     */
+    private final String[] keys;
+
+    /**
+     * entries in the order of their keys
+     */
+    private final TagClass[] tags;
+
+    /**
+     * position of each entry in the source list
+     */
+    private final int[] positions;
+
+    /**
+     * tag items created so far, in the order of the keys
+     */
+    private final TagItem[] items;
+
+    private final ItemFactory itemFactory;
+
+    public TagPrefixIndex(List<TagClass> tagList, ItemFactory itemFactory) {
+        this.itemFactory = itemFactory;
+        int count = tagList.size();
+        final String[] names = new String[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = normalize(tagList.get(i).getName());
+            order[i] = i;
+        }
+        // stable sort keeps the list order of equal names
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return names[a].compareTo(names[b]);
+            }
+        });
+
+        keys = new String[count];
+        tags = new TagClass[count];
+        positions = new int[count];
+        items = new TagItem[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = names[order[i]];
+            tags[i] = tagList.get(order[i]);
+            positions[i] = order[i];
+        }
+    }
+
+    /**
+     * @return text in the form the names are indexed in, lower cased independent of the default locale
+     */
+    public static String normalize(CharSequence text) {
+        return text.toString().toLowerCase(Locale.ROOT);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param prefix normalized prefix
+     * @return index of the first entry whose name starts with the prefix, or where it would be inserted
+     */
+    public int rangeStart(String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(prefix) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @param prefix normalized prefix
+     * @param start  result of {@link #rangeStart(String)} for the prefix
+     * @return index after the last entry whose name starts with the prefix
+     */
+    public int rangeEnd(String prefix, int start) {
+        // names starting with the prefix follow each other from the range start on
+        int low = start;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].startsWith(prefix))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    public TagClass getTag(int index) {
+        return tags[index];
+    }
+
+    /**
+     * @return tag item of an entry, created on first use
+     */
+    public TagItem getItem(int index) {
+        TagItem item = items[index];
+        if (item == null) {
+            item = itemFactory.createItem(tags[index], positions[index]);
+            items[index] = item;
+        }
+        return item;
+    }
+
+    /**
+     * add the tag items of all entries whose name starts with the query
+     *
+     * @param query text typed by the user
+     * @param out   list the matching tag items are added to
+     */
+    public void findItems(CharSequence query, List<TagItem> out) {
+        String prefix = normalize(query);
+        int start = rangeStart(prefix);
+        int end = rangeEnd(prefix, start);
+        for (int i = start; i < end; i++)
+            out.add(getItem(i));
+    }
+}
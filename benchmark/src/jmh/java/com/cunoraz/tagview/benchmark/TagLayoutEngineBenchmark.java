@@ -0,0 +1,161 @@
+package com.cunoraz.tagview.benchmark;
+
+import com.cunoraz.tagview.TagLayoutEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line breaking cost of {@link TagLayoutEngine} for growing tag counts, for full passes and for
+ * the incremental passes that update the previous one. Run with {@code ./gradlew :benchmark:jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagLayoutEngineBenchmark {
+
+    /**
+     * content width of a phone in portrait, in pixels
+     */
+    private static final int AVAILABLE_WIDTH = 1080;
+
+    /**
+     * content width of the same phone in a narrower window, in pixels
+     */
+    private static final int NARROW_WIDTH = 720;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int tagCount;
+
+    private TagLayoutEngine engine;
+
+    private TagLayoutEngine.Measurer measurer;
+
+    private int[] widths;
+
+    /**
+     * tag in the middle whose width the incremental benchmarks change
+     */
+    private int changedIndex;
+
+    private int changedWidth;
+
+    private int resizeWidth;
+
+    @Setup
+    public void setUp() {
+        // tag sizes of a typical cloud, fixed seed so runs are comparable
+        Random random = new Random(42);
+        final int[] widths = new int[tagCount];
+        final int[] heights = new int[tagCount];
+        this.widths = widths;
+        for (int i = 0; i < tagCount; i++) {
+            widths[i] = 80 + random.nextInt(320);
+            heights[i] = 60 + random.nextInt(3) * 10;
+        }
+        measurer = new TagLayoutEngine.Measurer() {
+            @Override
+            public int getWidth(int index) {
+                return widths[index];
+            }
+
+            @Override
+            public int getHeight(int index) {
+                return heights[index];
+            }
+        };
+
+        engine = new TagLayoutEngine();
+        engine.setItemMargin(13);
+        engine.setLineMargin(13);
+        engine.setWidthOffset(5);
+        // the incremental passes start from a laid out list
+        engine.layout(measurer, tagCount, AVAILABLE_WIDTH);
+        changedIndex = tagCount / 2;
+        changedWidth = widths[changedIndex];
+        resizeWidth = AVAILABLE_WIDTH;
+    }
+
+    @Benchmark
+    public int multiline() {
+        engine.layout(measurer, tagCount, AVAILABLE_WIDTH);
+        return engine.getContentHeight();
+    }
+
+    @Benchmark
+    public int multilineCenterVertical() {
+        engine.setCenterVertical(true);
+        engine.layout(measurer, tagCount, AVAILABLE_WIDTH);
+        engine.setCenterVertical(false);
+        return engine.getContentHeight();
+    }
+
+    @Benchmark
+    public int singleLine() {
+        engine.layout(measurer, tagCount, TagLayoutEngine.UNBOUNDED);
+        return engine.getContentWidth();
+    }
+
+    /**
+     * the last tag is appended again, only the last line is broken
+     */
+    @Benchmark
+    public int append() {
+        engine.append(measurer, tagCount, AVAILABLE_WIDTH);
+        return engine.getContentHeight();
+    }
+
+    /**
+     * a tag in the middle gets wider and narrower in turns, lines are broken from its line until
+     * one starts with the same tag as before
+     */
+    @Benchmark
+    public int reflow() {
+        toggleChangedWidth();
+        engine.reflow(measurer, tagCount, AVAILABLE_WIDTH, changedIndex, 0);
+        return engine.getContentHeight();
+    }
+
+    /**
+     * a tag in the middle gets wider and narrower in turns, all lines from its line on are broken
+     */
+    @Benchmark
+    public int layoutFrom() {
+        toggleChangedWidth();
+        engine.layoutFrom(measurer, tagCount, AVAILABLE_WIDTH, changedIndex);
+        return engine.getContentHeight();
+    }
+
+    /**
+     * the available width switches between two widths, all lines are broken from the sizes of the last pass
+     */
+    @Benchmark
+    public int resize() {
+        resizeWidth = resizeWidth == AVAILABLE_WIDTH ? NARROW_WIDTH : AVAILABLE_WIDTH;
+        engine.resize(resizeWidth);
+        return engine.getContentHeight();
+    }
+
+    /**
+     * the available width changes by a pixel, the lines only have to be checked
+     */
+    @Benchmark
+    public int resizeUnchanged() {
+        resizeWidth = resizeWidth == AVAILABLE_WIDTH ? AVAILABLE_WIDTH - 1 : AVAILABLE_WIDTH;
+        engine.resize(resizeWidth);
+        return engine.getContentHeight();
+    }
+
+    private void toggleChangedWidth() {
+        widths[changedIndex] = widths[changedIndex] == changedWidth ? changedWidth + 150 : changedWidth;
+    }
+}
@@ -24,6 +24,30 @@ public class Constants {
 
     public static final boolean DEFAULT_LAYOUT_HORIZONTAL_SCROLL = false;
 
+    public static final int DEFAULT_RECYCLE_POOL_SIZE = 50;
+
+    public static final int DEFAULT_ASYNC_DIFF_THRESHOLD = 1000;
+
+    public static final int DEFAULT_TEXT_WIDTH_CACHE_SIZE = 2000;
+
+    public static final int DEFAULT_DRAWABLE_CACHE_SIZE = 64;
+
+    public static final boolean DEFAULT_CANVAS_RENDERING = false;
+
+    public static final boolean DEFAULT_VIRTUALIZED = false;
+
+    public static final float DEFAULT_PREFETCH_MARGIN = 300;
+
+    public static final int DEFAULT_MAX_RESIDENT_PAGES = 10;
+
+    public static final boolean DEFAULT_PROGRESSIVE_RENDERING = false;
+
+    public static final int DEFAULT_FRAME_BUDGET_MILLIS = 8;
+
+    public static final int DEFAULT_MAX_LINES = 0;
+
+    public static final boolean DEFAULT_SHOW_OVERFLOW_CHIP = true;
+
     //----------------- separator TagItem Item-----------------//
 
     public static final float DEFAULT_TAG_TEXT_SIZE = 14f;
@@ -32,6 +56,8 @@ public class Constants {
 
     public static final float DEFAULT_TAG_DELETE_INDICATOR_SIZE = 14f;
 
+    public static final float DEFAULT_TAG_DELETE_INDICATOR_OFFSET = 2f;
+
     public static final float DEFAULT_TAG_LAYOUT_BORDER_SIZE = 0f;
 
     public static final float DEFAULT_TAG_RADIUS_PIXELS = 100;;
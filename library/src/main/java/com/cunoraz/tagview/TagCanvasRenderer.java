@@ -0,0 +1,208 @@
+package com.cunoraz.tagview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+
+import java.util.List;
+
+/**
+ * Draws tags directly on the canvas of a {@link TagView}, for the canvas rendering mode that
+ * uses no child views. Tag sizes come from a {@link TagMeasurer}.
+ * Only used from the main thread.
+ */
+class TagCanvasRenderer {
+
+    private final DisplayMetrics displayMetrics;
+
+    private final TagMeasurer measurer;
+
+    private final Paint backgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final RectF rect = new RectF();
+
+    private final Rect clipBounds = new Rect();
+
+    TagCanvasRenderer(DisplayMetrics displayMetrics, TagMeasurer measurer) {
+        this.displayMetrics = displayMetrics;
+        this.measurer = measurer;
+        borderPaint.setStyle(Paint.Style.STROKE);
+    }
+
+    /**
+     * draw the tags intersecting the clip bounds of the canvas
+     *
+     * @param canvas       canvas of the tag view
+     * @param items        measured tags
+     * @param engine       layout of the tags
+     * @param originX      left of the content area
+     * @param originY      top of the content area
+     * @param pressedIndex index of the pressed tag, or -1
+     */
+    void draw(Canvas canvas, List<TagItem> items, TagLayoutEngine engine, int originX, int originY, int pressedIndex) {
+        int count = Math.min(items.size(), engine.getOverflowStart());
+        if (count == 0)
+            return;
+        canvas.getClipBounds(clipBounds);
+        int firstLine = engine.findLine(clipBounds.top - originY);
+        int lineCount = engine.getLineCount();
+        int[] lineStarts = engine.getLineStarts();
+        int[] lineTops = engine.getLineTops();
+        int[] lefts = engine.getLefts();
+        int[] tops = engine.getTops();
+        // hidden tags have no size in the layout
+        int[] widths = engine.getWidths();
+        int[] heights = engine.getHeights();
+        for (int line = firstLine; line < lineCount && originY + lineTops[line] <= clipBounds.bottom; line++) {
+            int end = Math.min(engine.getLineEnd(line), count);
+            for (int i = lineStarts[line]; i < end; i++) {
+                int left = originX + lefts[i];
+                if (widths[i] == 0 || left > clipBounds.right || left + widths[i] < clipBounds.left)
+                    continue;
+                drawTag(canvas, items.get(i), i, left, originY + tops[i], widths[i], heights[i], i == pressedIndex);
+            }
+        }
+    }
+
+    private void drawTag(Canvas canvas, TagItem tagItem, int index, int left, int top, int width, int height, boolean pressed) {
+        drawBackground(canvas, tagItem, left, top, width, height, pressed);
+
+        TextPaint textPaint = measurer.getTextPaint();
+        int contentHeight = height - measurer.getTextPaddingTop() - measurer.getTextPaddingBottom();
+        measurer.setTextSize(tagItem.getTagTextSize());
+        textPaint.setColor(tagItem.getTagTextColor());
+        CharSequence text = measurer.getText(index, tagItem);
+        int textLeft = left + measurer.getTextPaddingLeft();
+        canvas.drawText(text, 0, text.length(), textLeft, getBaseline(top, contentHeight), textPaint);
+
+        if (tagItem.isDeletable()) {
+            measurer.setTextSize(tagItem.getDeleteIndicatorSize());
+            textPaint.setColor(tagItem.getDeleteIndicatorColor());
+            int deleteLeft = textLeft + measurer.getTextWidth(index) + measurer.getTextPaddingRight() + measurer.getDeleteOffset();
+            canvas.drawText(tagItem.getDeleteIndicator(), deleteLeft, getBaseline(top, contentHeight), textPaint);
+        }
+    }
+
+    /**
+     * draw the chip ending the last line when not all tags fit into the maximum number of lines
+     *
+     * @param canvas   canvas of the tag view
+     * @param chipItem tag item with the style and text of the chip
+     * @param engine   layout of the tags
+     * @param originX  left of the content area
+     * @param originY  top of the content area
+     * @param pressed  true if the chip is pressed
+     */
+    void drawOverflowChip(Canvas canvas, TagItem chipItem, TagLayoutEngine engine, int originX, int originY, boolean pressed) {
+        if (!hasOverflowChip(engine))
+            return;
+        int left = originX + engine.getOverflowLeft();
+        int top = originY + engine.getOverflowTop();
+        int height = engine.getOverflowHeight();
+        drawBackground(canvas, chipItem, left, top, engine.getOverflowWidth(), height, pressed);
+
+        TextPaint textPaint = measurer.getTextPaint();
+        int contentHeight = height - measurer.getTextPaddingTop() - measurer.getTextPaddingBottom();
+        measurer.setTextSize(chipItem.getTagTextSize());
+        textPaint.setColor(chipItem.getTagTextColor());
+        canvas.drawText(chipItem.getText(), left + measurer.getTextPaddingLeft(), getBaseline(top, contentHeight), textPaint);
+    }
+
+    private void drawBackground(Canvas canvas, TagItem tagItem, int left, int top, int width, int height, boolean pressed) {
+        rect.set(left, top, left + width, top + height);
+
+        Drawable background = tagItem.getBackground();
+        if (background != null) {
+            background.setBounds(left, top, left + width, top + height);
+            background.draw(canvas);
+        } else {
+            backgroundPaint.setColor(pressed ? tagItem.getLayoutColorPress() : tagItem.getLayoutColor());
+            canvas.drawRoundRect(rect, tagItem.getBorderRadius(), tagItem.getBorderRadius(), backgroundPaint);
+            if (!pressed && tagItem.getLayoutBorderSize() > 0) {
+                // same rounding as Utils#dipToPx
+                int strokeWidth = (int) (tagItem.getLayoutBorderSize() * displayMetrics.density);
+                borderPaint.setStrokeWidth(strokeWidth);
+                borderPaint.setColor(tagItem.getLayoutBorderColor());
+                rect.inset(strokeWidth / 2f, strokeWidth / 2f);
+                canvas.drawRoundRect(rect, tagItem.getBorderRadius(), tagItem.getBorderRadius(), borderPaint);
+            }
+        }
+    }
+
+    /**
+     * baseline of a text line centered in the content of a tag, uses the current text size
+     */
+    private float getBaseline(int top, int contentHeight) {
+        Paint.FontMetricsInt fontMetrics = measurer.getFontMetrics();
+        int lineHeight = fontMetrics.bottom - fontMetrics.top;
+        return top + measurer.getTextPaddingTop() + (contentHeight - lineHeight) / 2 - fontMetrics.top;
+    }
+
+    /**
+     * find the tag at a point
+     *
+     * @param engine layout of the tags
+     * @param x      x relative to the content area
+     * @param y      y relative to the content area
+     * @return index of the tag, or -1
+     */
+    int hitTest(TagLayoutEngine engine, int x, int y) {
+        int lineCount = engine.getLineCount();
+        if (lineCount == 0 || y < 0)
+            return -1;
+        int line = engine.findLine(y);
+        if (line >= lineCount)
+            return -1;
+        int end = engine.getLineEnd(line);
+        int[] lefts = engine.getLefts();
+        int[] tops = engine.getTops();
+        int[] widths = engine.getWidths();
+        int[] heights = engine.getHeights();
+        for (int i = engine.getLineStarts()[line]; i < end; i++) {
+            if (x >= lefts[i] && x < lefts[i] + widths[i]
+                    && y >= tops[i] && y < tops[i] + heights[i])
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param engine layout of the tags
+     * @param x      x relative to the content area
+     * @param y      y relative to the content area
+     * @return true if the point is on the overflow chip
+     */
+    boolean isOverflowChipHit(TagLayoutEngine engine, int x, int y) {
+        if (!hasOverflowChip(engine))
+            return false;
+        int left = engine.getOverflowLeft();
+        int top = engine.getOverflowTop();
+        return x >= left && x < left + engine.getOverflowWidth()
+                && y >= top && y < top + engine.getOverflowHeight();
+    }
+
+    /**
+     * @return true if the last pass of the engine ended the last line with an overflow chip
+     */
+    static boolean hasOverflowChip(TagLayoutEngine engine) {
+        return engine.getOverflowStart() < engine.getItemCount() && engine.getOverflowWidth() > 0;
+    }
+
+    /**
+     * @param engine layout of the tags
+     * @param index  index of a deletable tag
+     * @param x      x relative to the content area
+     * @return true if x is on the delete indicator of the tag, including its padding
+     */
+    boolean isDeleteHit(TagLayoutEngine engine, int index, int x) {
+        int deleteLeft = engine.getLefts()[index] + measurer.getTextPaddingLeft()
+                + measurer.getTextWidth(index) + measurer.getTextPaddingRight();
+        return x >= deleteLeft;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cunoraz.tagview;
+
+import java.util.List;
+
+/**
+ * Source of tags that {@link TagView} loads page by page while the user scrolls, e.g. backed
+ * by a Cursor or a paging API, see {@link TagView#setDataSource(TagDataSource)}.
+ */
+public interface TagDataSource {
+
+    /**
+     * load a page of tags. Called on the main thread, one page at a time; the result can be
+     * delivered right away or later from any thread. Each load has to end with exactly one call
+     * of the callback, further pages are not requested until then.
+     *
+     * @param page     index of the page, starting at 0
+     * @param callback receives the tags of the page
+     */
+    void loadPage(int page, LoadCallback callback);
+
+    interface LoadCallback {
+
+        /**
+         * @param tagItems tags of the page, may be empty
+         * @param lastPage true if there are no pages after this one
+         */
+        void onPageLoaded(List<TagItem> tagItems, boolean lastPage);
+
+        /**
+         * report that the page could not be loaded, it is requested again the next time the
+         * visible part of the view gets close to it
+         *
+         * @param error cause of the failure, may be null
+         */
+        void onPageLoadFailed(Throwable error);
+    }
+}
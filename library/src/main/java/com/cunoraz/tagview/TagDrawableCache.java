@@ -0,0 +1,149 @@
+package com.cunoraz.tagview;
+
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.StateListDrawable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Background drawables of tags, shared between all tags with the same style.
+ * A style is built once and every tag gets its own instance from {@link Drawable.ConstantState#newDrawable()},
+ * which shares the drawing state with all other tags of that style.
+ * Only used from the main thread.
+ */
+class TagDrawableCache {
+
+    private static final int[] STATE_PRESSED = new int[]{android.R.attr.state_pressed};
+
+    private static final int[] STATE_DEFAULT = new int[]{};
+
+    private static TagDrawableCache sharedInstance;
+
+    private final LinkedHashMap<StyleKey, Drawable.ConstantState> states;
+
+    /**
+     * key reused for lookups
+     */
+    private final StyleKey lookupKey = new StyleKey();
+
+    private final int maxSize;
+
+    private int hitCount;
+
+    private int missCount;
+
+    TagDrawableCache(int maxSize) {
+        this.maxSize = maxSize;
+        // access order turns the map into an LRU list
+        this.states = new LinkedHashMap<StyleKey, Drawable.ConstantState>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StyleKey, Drawable.ConstantState> eldest) {
+                return size() > TagDrawableCache.this.maxSize;
+            }
+        };
+    }
+
+    static TagDrawableCache getSharedInstance() {
+        if (sharedInstance == null)
+            sharedInstance = new TagDrawableCache(Constants.DEFAULT_DRAWABLE_CACHE_SIZE);
+        return sharedInstance;
+    }
+
+    /**
+     * get a background drawable for the style of a tag item
+     *
+     * @param tagItem tag item without custom background
+     * @param density display density, used to convert the border size
+     * @return new drawable instance sharing its state with all tags of the same style
+     */
+    Drawable obtain(TagItem tagItem, float density) {
+        lookupKey.set(tagItem, density);
+        Drawable.ConstantState state = states.get(lookupKey);
+        if (state != null) {
+            hitCount++;
+            return state.newDrawable();
+        }
+        missCount++;
+
+        StateListDrawable states = new StateListDrawable();
+        GradientDrawable gdNormal = new GradientDrawable();
+        gdNormal.setColor(tagItem.getLayoutColor());
+        gdNormal.setCornerRadius(tagItem.getBorderRadius());
+        if (tagItem.getLayoutBorderSize() > 0) {
+            // same rounding as Utils#dipToPx
+            gdNormal.setStroke((int) (tagItem.getLayoutBorderSize() * density), tagItem.getLayoutBorderColor());
+        }
+        GradientDrawable gdPress = new GradientDrawable();
+        gdPress.setColor(tagItem.getLayoutColorPress());
+        gdPress.setCornerRadius(tagItem.getBorderRadius());
+        states.addState(STATE_PRESSED, gdPress);
+        //must add state_pressed first, or state_pressed will not take effect
+        states.addState(STATE_DEFAULT, gdNormal);
+
+        StyleKey key = new StyleKey();
+        key.set(tagItem, density);
+        this.states.put(key, states.getConstantState());
+        return states;
+    }
+
+    int getHitCount() {
+        return hitCount;
+    }
+
+    int getMissCount() {
+        return missCount;
+    }
+
+    private static class StyleKey {
+
+        private int layoutColor;
+
+        private int layoutColorPress;
+
+        private float borderRadius;
+
+        private float layoutBorderSize;
+
+        private int layoutBorderColor;
+
+        private float density;
+
+        void set(TagItem tagItem, float density) {
+            this.layoutColor = tagItem.getLayoutColor();
+            this.layoutColorPress = tagItem.getLayoutColorPress();
+            this.borderRadius = tagItem.getBorderRadius();
+            this.layoutBorderSize = tagItem.getLayoutBorderSize();
+            // the border color is not drawn without a border
+            this.layoutBorderColor = layoutBorderSize > 0 ? tagItem.getLayoutBorderColor() : 0;
+            this.density = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof StyleKey))
+                return false;
+            StyleKey key = (StyleKey) o;
+            return layoutColor == key.layoutColor
+                    && layoutColorPress == key.layoutColorPress
+                    && borderRadius == key.borderRadius
+                    && layoutBorderSize == key.layoutBorderSize
+                    && layoutBorderColor == key.layoutBorderColor
+                    && density == key.density;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = layoutColor;
+            result = 31 * result + layoutColorPress;
+            result = 31 * result + Float.floatToIntBits(borderRadius);
+            result = 31 * result + Float.floatToIntBits(layoutBorderSize);
+            result = 31 * result + layoutBorderColor;
+            result = 31 * result + Float.floatToIntBits(density);
+            return result;
+        }
+    }
+}
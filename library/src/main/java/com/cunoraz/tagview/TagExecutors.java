@@ -0,0 +1,50 @@
+package com.cunoraz.tagview;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads shared by all {@link TagView} instances for work that does not touch views.
+ */
+class TagExecutors {
+
+    private static ExecutorService background;
+
+    private static Handler mainHandler;
+
+    private TagExecutors() throws InstantiationException {
+        throw new InstantiationException("This class is not for instantiation");
+    }
+
+    /**
+     * @return single background thread, tasks run in the order they were submitted
+     */
+    static synchronized Executor background() {
+        if (background == null) {
+            background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TagView-background");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return background;
+    }
+
+    /**
+     * @return handler of the main thread, usable while a view is detached
+     */
+    static synchronized Handler main() {
+        if (mainHandler == null)
+            mainHandler = new Handler(Looper.getMainLooper());
+        return mainHandler;
+    }
+}
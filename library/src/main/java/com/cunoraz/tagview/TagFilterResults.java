@@ -0,0 +1,65 @@
+package com.cunoraz.tagview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results of a {@link TagView.TagFilter} for the current query and the shorter queries it
+ * extends. A query that extends the last one only tests the tags that matched it; going back to
+ * a shorter query, e.g. after deleting a character, returns its kept result without testing any tag.
+ * Results are positions in a tag list and have to be cleared when the list changes.
+ */
+class TagFilterResults {
+
+    /**
+     * queries in the order they were typed, each one extends the one before
+     */
+    private final ArrayList<String> queries = new ArrayList<>();
+
+    /**
+     * positions of the matching tags of each query, in ascending order
+     */
+    private final ArrayList<int[]> results = new ArrayList<>();
+
+    void clear() {
+        queries.clear();
+        results.clear();
+    }
+
+    /**
+     * @param items  tags to filter
+     * @param query  filter query
+     * @param filter filter that matches fewer tags, or the same ones, when a query is extended
+     * @return positions of the matching tags in ascending order, or null if the query is empty
+     */
+    int[] find(List<TagItem> items, String query, TagView.TagFilter filter) {
+        if (query.isEmpty()) {
+            clear();
+            return null;
+        }
+        // results of queries the new one does not extend are not needed anymore
+        int last = queries.size() - 1;
+        while (last >= 0 && !query.startsWith(queries.get(last))) {
+            queries.remove(last);
+            results.remove(last);
+            last--;
+        }
+        if (last >= 0 && queries.get(last).equals(query))
+            return results.get(last);
+
+        int[] candidates = last >= 0 ? results.get(last) : null;
+        int candidateCount = candidates != null ? candidates.length : items.size();
+        int[] matches = new int[candidateCount];
+        int count = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int position = candidates != null ? candidates[i] : i;
+            if (filter.matches(items.get(position), query))
+                matches[count++] = position;
+        }
+        int[] result = count == candidateCount ? matches : Arrays.copyOf(matches, count);
+        queries.add(query);
+        results.add(result);
+        return result;
+    }
+}
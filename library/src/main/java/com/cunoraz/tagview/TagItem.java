@@ -4,7 +4,6 @@ import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.ColorInt;
 import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
 
 public class TagItem {
 
@@ -25,113 +24,33 @@ public class TagItem {
     private String text;
 
     /**
-     * Tag item text color resource int
+     * look of the tag, shared with all tags that look the same
      */
-    private int tagTextColor;
+    private TagStyle style;
 
     /**
-     * Tag item size in sp
+     * number of modifications, lets {@link TagView} detect changes of an item it already shows
      */
-    private float tagTextSize;
-
-    /**
-     * Tag item background color resource
-     */
-    private int layoutColor;
-
-    /**
-     * Tag item background color resource in pressed state.
-     */
-    private int layoutColorPress;
-
-    /**
-     * boolean to allow removing tag item, default is false.
-     */
-    private boolean isDeletable;
-
-    /**
-     * String to be displayed delete indicator, usually one character is preferred
-     */
-    private String deleteIndicator;
-
-    /**
-     * Color resource int for the delete indicator
-     */
-    private int deleteIndicatorColor;
-
-    /**
-     * Size in sp for delete indicator
-     */
-    private float deleteIndicatorSize;
-
-    /**
-     * border corner radius value in pixels
-     */
-    private float borderRadius;
-
-    /**
-     * size of border to be shown in dp
-     */
-    private float layoutBorderSize;
-
-    /**
-     * Color resource int
-     */
-    private int layoutBorderColor;
-
-    /**
-     * custom background drawable
-     */
-    private Drawable background;
+    private int modCount;
 
 
     public TagItem(Context context, String text) {
-        init(0, text,
-                ContextCompat.getColor(context, R.color.primaryTextColor),
-                Constants.DEFAULT_TAG_TEXT_SIZE,
-                ContextCompat.getColor(context, R.color.primaryLightColor),
-                ContextCompat.getColor(context, R.color.primaryColor),
-                Constants.DEFAULT_TAG_IS_DELETABLE,
-                ContextCompat.getColor(context, R.color.primaryTextColor),
-                Constants.DEFAULT_TAG_DELETE_INDICATOR_SIZE,
-                Constants.DEFAULT_TAG_RADIUS_PIXELS,
-                context.getResources().getString(R.string.default_delete_icon),
-                Constants.DEFAULT_TAG_LAYOUT_BORDER_SIZE,
-                ContextCompat.getColor(context, R.color.primaryColor));
+        this(text, TagStyle.getDefault(context));
     }
 
     public TagItem(Context context, String text, boolean isDeletable) {
-        init(0, text,
-                ContextCompat.getColor(context, R.color.primaryTextColor),
-                Constants.DEFAULT_TAG_TEXT_SIZE,
-                ContextCompat.getColor(context, R.color.primaryLightColor),
-                ContextCompat.getColor(context, R.color.primaryColor),
-                isDeletable,
-                ContextCompat.getColor(context, R.color.primaryTextColor),
-                Constants.DEFAULT_TAG_DELETE_INDICATOR_SIZE,
-                Constants.DEFAULT_TAG_RADIUS_PIXELS,
-                context.getResources().getString(R.string.default_delete_icon),
-                Constants.DEFAULT_TAG_LAYOUT_BORDER_SIZE,
-                ContextCompat.getColor(context, R.color.primaryColor));
-    }
-
-    private void init(int id, String text, int tagTextColor, float tagTextSize,
-                      int layoutColor, int layoutColorPress, boolean isDeletable,
-                      int deleteIndicatorColor, float deleteIndicatorSize, float radius,
-                      String deleteIndicator, float layoutBorderSize, int layoutBorderColor) {
-        this.id = id;
+        this(text, TagStyle.getDefault(context).withDeletable(isDeletable));
+    }
+
+    /**
+     * create a tag item with a shared style, no resources are read
+     *
+     * @param text  text to be displayed in tag item
+     * @param style look of the tag
+     */
+    public TagItem(String text, TagStyle style) {
         this.text = text;
-        this.tagTextColor = tagTextColor;
-        this.tagTextSize = tagTextSize;
-        this.layoutColor = layoutColor;
-        this.layoutColorPress = layoutColorPress;
-        this.isDeletable = isDeletable;
-        this.deleteIndicatorColor = deleteIndicatorColor;
-        this.deleteIndicatorSize = deleteIndicatorSize;
-        this.borderRadius = radius;
-        this.deleteIndicator = deleteIndicator;
-        this.layoutBorderSize = layoutBorderSize;
-        this.layoutBorderColor = layoutBorderColor;
+        this.style = style;
     }
 
     public int getId() {
@@ -149,10 +68,11 @@ public class TagItem {
      */
     public void setText(String text) {
         this.text = text;
+        modCount++;
     }
 
     public int getTagTextColor() {
-        return tagTextColor;
+        return style.getTagTextColor();
     }
 
     /**
@@ -161,11 +81,12 @@ public class TagItem {
      * @param tagTextColor color resource value
      */
     public void setTagTextColor(@ColorInt int tagTextColor) {
-        this.tagTextColor = tagTextColor;
+        style = style.withTagTextColor(tagTextColor);
+        modCount++;
     }
 
     public float getTagTextSize() {
-        return tagTextSize;
+        return style.getTagTextSize();
     }
 
     /**
@@ -174,11 +95,12 @@ public class TagItem {
      * @param tagTextSizeSp size in sp
      */
     public void setTagTextSize(float tagTextSizeSp) {
-        this.tagTextSize = tagTextSizeSp;
+        style = style.withTagTextSize(tagTextSizeSp);
+        modCount++;
     }
 
     public int getLayoutColor() {
-        return layoutColor;
+        return style.getLayoutColor();
     }
 
     /**
@@ -187,11 +109,12 @@ public class TagItem {
      * @param layoutColor color resource value
      */
     public void setLayoutColor(@ColorInt int layoutColor) {
-        this.layoutColor = layoutColor;
+        style = style.withLayoutColor(layoutColor);
+        modCount++;
     }
 
     public int getLayoutColorPress() {
-        return layoutColorPress;
+        return style.getLayoutColorPress();
     }
 
     /**
@@ -200,11 +123,12 @@ public class TagItem {
      * @param layoutColorPress color resource value
      */
     public void setLayoutColorPress(@ColorInt int layoutColorPress) {
-        this.layoutColorPress = layoutColorPress;
+        style = style.withLayoutColorPress(layoutColorPress);
+        modCount++;
     }
 
     public boolean isDeletable() {
-        return isDeletable;
+        return style.isDeletable();
     }
 
     /**
@@ -213,11 +137,12 @@ public class TagItem {
      * @param deletable true to make deletable.
      */
     public void setDeletable(boolean deletable) {
-        isDeletable = deletable;
+        style = style.withDeletable(deletable);
+        modCount++;
     }
 
     public String getDeleteIndicator() {
-        return deleteIndicator;
+        return style.getDeleteIndicator();
     }
 
     /**
@@ -227,11 +152,12 @@ public class TagItem {
      * @param deleteIndicator indicator text value
      */
     public void setDeleteIndicator(String deleteIndicator) {
-        this.deleteIndicator = deleteIndicator;
+        style = style.withDeleteIndicator(deleteIndicator);
+        modCount++;
     }
 
     public int getDeleteIndicatorColor() {
-        return deleteIndicatorColor;
+        return style.getDeleteIndicatorColor();
     }
 
     /**
@@ -240,11 +166,12 @@ public class TagItem {
      * @param deleteIndicatorColor color resource value
      */
     public void setDeleteIndicatorColor(@ColorInt int deleteIndicatorColor) {
-        this.deleteIndicatorColor = deleteIndicatorColor;
+        style = style.withDeleteIndicatorColor(deleteIndicatorColor);
+        modCount++;
     }
 
     public float getDeleteIndicatorSize() {
-        return deleteIndicatorSize;
+        return style.getDeleteIndicatorSize();
     }
 
     /**
@@ -253,11 +180,12 @@ public class TagItem {
      * @param deleteIndicatorSize size in sp
      */
     public void setDeleteIndicatorSize(float deleteIndicatorSize) {
-        this.deleteIndicatorSize = deleteIndicatorSize;
+        style = style.withDeleteIndicatorSize(deleteIndicatorSize);
+        modCount++;
     }
 
     public float getBorderRadius() {
-        return borderRadius;
+        return style.getBorderRadius();
     }
 
     /**
@@ -266,19 +194,21 @@ public class TagItem {
      * @param pixelSize radius in pixels
      */
     public void setBorderRadius(float pixelSize) {
-        this.borderRadius = pixelSize;
+        style = style.withBorderRadius(pixelSize);
+        modCount++;
     }
 
     public float getLayoutBorderSize() {
-        return layoutBorderSize;
+        return style.getLayoutBorderSize();
     }
 
     public void setLayoutBorderSize(float layoutBorderSize) {
-        this.layoutBorderSize = layoutBorderSize;
+        style = style.withLayoutBorderSize(layoutBorderSize);
+        modCount++;
     }
 
     public int getLayoutBorderColor() {
-        return layoutBorderColor;
+        return style.getLayoutBorderColor();
     }
 
     /**
@@ -287,12 +217,13 @@ public class TagItem {
      * @param layoutBorderColor resource value
      */
     public void setLayoutBorderColor(@ColorInt int layoutBorderColor) {
-        this.layoutBorderColor = layoutBorderColor;
+        style = style.withLayoutBorderColor(layoutBorderColor);
+        modCount++;
     }
 
     @Nullable
     public Drawable getBackground() {
-        return background;
+        return style.getBackground();
     }
 
     /**
@@ -301,7 +232,8 @@ public class TagItem {
      * @param background drawable object
      */
     public void setBackground(Drawable background) {
-        this.background = background;
+        style = style.withBackground(background);
+        modCount++;
     }
 
     @Nullable
@@ -311,5 +243,44 @@ public class TagItem {
 
     public void setKey(String key) {
         this.key = key;
+        modCount++;
+    }
+
+    /**
+     * key used to match this item with an item of a previous list
+     *
+     * @return {@link #getKey()}, or this item itself if no key is set, so that an item without
+     * key is only matched with the same instance
+     */
+    Object getDiffKey() {
+        return key != null ? key : this;
+    }
+
+    int getModCount() {
+        return modCount;
+    }
+
+    public TagStyle getStyle() {
+        return style;
+    }
+
+    /**
+     * set the look of the tag, replacing all style values at once
+     *
+     * @param style shared style
+     */
+    public void setStyle(TagStyle style) {
+        this.style = style;
+        modCount++;
+    }
+
+    /**
+     * @param other tag item to compare
+     * @return true if both items are shown the same way
+     */
+    boolean hasSameContent(TagItem other) {
+        // styles are interned, equal styles are the same object
+        return style == other.style
+                && (text == null ? other.text == null : text.equals(other.text));
     }
 }
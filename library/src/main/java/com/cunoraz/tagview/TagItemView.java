@@ -0,0 +1,54 @@
+package com.cunoraz.tagview;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * View of a single tag, built in code with the same views and attributes as
+ * {@link R.layout#tagview_item}. Creating it skips parsing the layout, and the text
+ * views are referenced directly instead of being looked up on every bind and measure.
+ */
+class TagItemView extends LinearLayout {
+
+    private final TextView textView;
+
+    private final TextView deleteView;
+
+    TagItemView(Context context) {
+        super(context);
+        setOrientation(HORIZONTAL);
+        setGravity(Gravity.CENTER_VERTICAL);
+
+        textView = new TextView(context);
+        textView.setId(R.id.tv_tag_item_contain);
+        textView.setGravity(Gravity.CENTER);
+        textView.setSingleLine(true);
+        textView.setEllipsize(TextUtils.TruncateAt.END);
+        addView(textView, new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT));
+
+        deleteView = new TextView(context);
+        deleteView.setId(R.id.tv_tag_item_delete);
+        deleteView.setGravity(Gravity.CENTER);
+        deleteView.setSingleLine(true);
+        deleteView.setVisibility(View.GONE);
+        addView(deleteView, new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT));
+    }
+
+    /**
+     * @return text view of the tag text
+     */
+    TextView getTextView() {
+        return textView;
+    }
+
+    /**
+     * @return text view of the delete indicator, gone unless the tag is deletable
+     */
+    TextView getDeleteView() {
+        return deleteView;
+    }
+}
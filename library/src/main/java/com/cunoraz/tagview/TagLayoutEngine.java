@@ -0,0 +1,764 @@
+package com.cunoraz.tagview;
+
+/**
+ * Line breaking of tags for {@link TagView}, free of Android dependencies so that it can be
+ * tested and benchmarked on a plain JVM.
+ * <p>
+ * Tag sizes are read through a {@link Measurer}. Results are kept in primitive arrays that are
+ * reused between passes; positions are relative to the top left corner of the content area,
+ * paddings of the view are not included.
+ */
+public class TagLayoutEngine {
+
+    /**
+     * available width for {@link #layout(Measurer, int, int)} that keeps all tags in one line
+     */
+    public static final int UNBOUNDED = -1;
+
+    /**
+     * width returned by a {@link Measurer} for a hidden tag, which takes no space and stays in
+     * the line of the tag before it
+     */
+    public static final int GONE = -1;
+
+    /**
+     * Source of tag sizes in pixels, called once per tag and pass. A hidden tag has the width {@link #GONE}.
+     */
+    public interface Measurer {
+
+        int getWidth(int index);
+
+        int getHeight(int index);
+    }
+
+    /**
+     * Size of the chip that ends the last line when not all tags fit into the maximum number of lines.
+     */
+    public interface OverflowMeasurer {
+
+        /**
+         * @param overflowStart index of the first tag that is not shown
+         */
+        int getWidth(int overflowStart);
+
+        /**
+         * @param overflowStart index of the first tag that is not shown
+         */
+        int getHeight(int overflowStart);
+    }
+
+    /**
+     * horizontal space between two tags of a line
+     */
+    private int itemMargin;
+
+    /**
+     * vertical space after each line
+     */
+    private int lineMargin;
+
+    /**
+     * extra space kept free at the end of each line
+     */
+    private int widthOffset;
+
+    /**
+     * true to center tags vertically in their line, false to align them to the line top
+     */
+    private boolean centerVertical;
+
+    private int itemCount;
+
+    private int[] lefts = new int[0];
+
+    private int[] tops = new int[0];
+
+    private int[] widths = new int[0];
+
+    private int[] heights = new int[0];
+
+    /**
+     * line index of each tag
+     */
+    private int[] itemLines = new int[0];
+
+    private int lineCount;
+
+    /**
+     * index of the first tag of each line
+     */
+    private int[] lineStarts = new int[0];
+
+    private int[] lineTops = new int[0];
+
+    private int[] lineHeights = new int[0];
+
+    private int[] lineWidths = new int[0];
+
+    /**
+     * lines of the previous pass, compared with the new lines by {@link #reflow(Measurer, int, int, int, int)}
+     */
+    private int[] previousLineStarts = new int[0];
+
+    private int[] previousLineTops = new int[0];
+
+    private int[] previousLineHeights = new int[0];
+
+    private int[] previousLineWidths = new int[0];
+
+    private int contentWidth;
+
+    private int contentHeight;
+
+    /**
+     * available width of the last pass
+     */
+    private int availableWidth = UNBOUNDED;
+
+    /**
+     * set when a setting changed after the last pass, so that it cannot be reflowed
+     */
+    private boolean settingsChanged;
+
+    /**
+     * range of tags whose offsets may differ from the pass before the last one
+     */
+    private int changedStart;
+
+    private int changedEnd;
+
+    /**
+     * maximum number of lines, 0 for no limit
+     */
+    private int maxLines;
+
+    private OverflowMeasurer overflowMeasurer;
+
+    /**
+     * index of the first tag that did not fit into the maximum number of lines, the item count if all tags fit
+     */
+    private int overflowStart;
+
+    private int overflowLeft;
+
+    private int overflowTop;
+
+    private int overflowWidth;
+
+    private int overflowHeight;
+
+    /**
+     * sizes of the last pass, a tag without width was hidden
+     */
+    private final Measurer lastSizes = new Measurer() {
+        @Override
+        public int getWidth(int index) {
+            return widths[index] == 0 ? GONE : widths[index];
+        }
+
+        @Override
+        public int getHeight(int index) {
+            return heights[index];
+        }
+    };
+
+    /**
+     * break tags into lines and compute their offsets
+     *
+     * @param measurer       source of tag sizes
+     * @param count          number of tags
+     * @param availableWidth width of the content area in pixels, or {@link #UNBOUNDED} for a single line
+     */
+    public void layout(Measurer measurer, int count, int availableWidth) {
+        ensureItemCapacity(count);
+        itemCount = count;
+        lineCount = 0;
+        this.availableWidth = availableWidth;
+        settingsChanged = false;
+        overflowStart = count;
+        overflowLeft = 0;
+        overflowTop = 0;
+        overflowWidth = 0;
+        overflowHeight = 0;
+        breakLines(measurer, 0, 0, -1, 0, 0);
+        updateContentSize(0, 0);
+        changedStart = 0;
+        changedEnd = count;
+    }
+
+    /**
+     * update the last pass after tags were appended. Only the last line and the appended tags
+     * are broken again, the cost does not depend on the number of tags before them. Falls back
+     * to {@link #layout(Measurer, int, int)} if the settings or the available width changed
+     * since the last pass, or the number of lines is limited.
+     *
+     * @param measurer       source of tag sizes, only called for tags of the last line and the appended ones
+     * @param count          number of tags including the appended ones
+     * @param availableWidth width of the content area in pixels, or {@link #UNBOUNDED} for a single line
+     */
+    public void append(Measurer measurer, int count, int availableWidth) {
+        if (settingsChanged || availableWidth != this.availableWidth || count < itemCount || lineCount == 0
+                || maxLines > 0) {
+            layout(measurer, count, availableWidth);
+            return;
+        }
+        int line = lineCount - 1;
+        int start = lineStarts[line];
+        ensureItemCapacity(count);
+        itemCount = count;
+        // without a line limit all tags fit
+        overflowStart = count;
+        lineCount = line;
+        breakLines(measurer, start, lineTops[line], -1, 0, 0);
+        // lines only get wider by appending, the widest line so far is still a candidate
+        updateContentSize(line, contentWidth);
+        changedStart = start;
+    }
+
+    /**
+     * update the last pass after tags were removed or resized. Lines before the one holding the
+     * first affected tag are kept; breaking stops at the first line that starts with the same tag
+     * as before, the following lines are only shifted. Falls back to {@link #layout(Measurer, int, int)}
+     * if the settings or the available width changed since the last pass, or the number of lines is limited.
+     *
+     * @param measurer       source of tag sizes, only called for tags of the lines that are broken again
+     * @param count          number of tags
+     * @param availableWidth width of the content area in pixels, or {@link #UNBOUNDED} for a single line
+     * @param firstChanged   index of the first removed tag, or of the resized tag
+     * @param removedCount   number of tags removed at firstChanged, 0 if the tag at firstChanged was resized
+     */
+    public void reflow(Measurer measurer, int count, int availableWidth, int firstChanged, int removedCount) {
+        if (settingsChanged || availableWidth != this.availableWidth || count != itemCount - removedCount
+                || firstChanged < 0 || firstChanged >= itemCount || lineCount == 0 || maxLines > 0) {
+            layout(measurer, count, availableWidth);
+            return;
+        }
+        int line = itemLines[firstChanged];
+        // the first tag of a line may now fit at the end of the previous one
+        if (line > 0 && lineStarts[line] == firstChanged)
+            line--;
+
+        // lines from here on are compared against the previous pass
+        int oldLineCount = lineCount;
+        ensurePreviousLineCapacity(oldLineCount);
+        System.arraycopy(lineStarts, line, previousLineStarts, line, oldLineCount - line);
+        System.arraycopy(lineTops, line, previousLineTops, line, oldLineCount - line);
+        System.arraycopy(lineHeights, line, previousLineHeights, line, oldLineCount - line);
+        System.arraycopy(lineWidths, line, previousLineWidths, line, oldLineCount - line);
+
+        int start = lineStarts[line];
+        int lineTop = lineTops[line];
+        itemCount = count;
+        overflowStart = count;
+        lineCount = line;
+        // a line can only start like before after the resized tag
+        int matchFrom = removedCount > 0 ? firstChanged : firstChanged + 1;
+        breakLines(measurer, start, lineTop, oldLineCount, removedCount, matchFrom);
+        updateContentSize(0, 0);
+        changedStart = start;
+    }
+
+    /**
+     * update the last pass after any change from a tag on, like inserted, moved or replaced tags.
+     * Lines before the one holding the last unchanged tag are kept, all following tags are broken
+     * again. Falls back to {@link #layout(Measurer, int, int)} if the settings or the available
+     * width changed since the last pass, or the number of lines is limited.
+     *
+     * @param measurer       source of tag sizes, only called for tags of the lines that are broken again
+     * @param count          number of tags
+     * @param availableWidth width of the content area in pixels, or {@link #UNBOUNDED} for a single line
+     * @param firstChanged   index of the first tag that differs from the last pass, all tags before it are unchanged
+     */
+    public void layoutFrom(Measurer measurer, int count, int availableWidth, int firstChanged) {
+        if (settingsChanged || availableWidth != this.availableWidth || firstChanged <= 0
+                || firstChanged > Math.min(count, itemCount) || lineCount == 0 || maxLines > 0) {
+            layout(measurer, count, availableWidth);
+            return;
+        }
+        // a changed tag may now fit at the end of the line of the tag before it
+        int line = itemLines[firstChanged - 1];
+        int start = lineStarts[line];
+        ensureItemCapacity(count);
+        itemCount = count;
+        overflowStart = count;
+        lineCount = line;
+        breakLines(measurer, start, lineTops[line], -1, 0, 0);
+        updateContentSize(0, 0);
+        changedStart = start;
+    }
+
+    /**
+     * break the tags of the last pass into lines for another available width, keeping their
+     * sizes; the caller has to make sure that no size depends on the width. If every line still
+     * breaks at the same tag nothing is updated and the changed range is empty. Not possible
+     * while the number of lines is limited, tags after the last line have no sizes.
+     *
+     * @param availableWidth width of the content area in pixels, or {@link #UNBOUNDED} for a single line
+     * @return true if the tags were broken into lines again
+     */
+    public boolean resize(int availableWidth) {
+        if (!settingsChanged && breaksLikeLastPass(availableWidth)) {
+            this.availableWidth = availableWidth;
+            changedStart = 0;
+            changedEnd = 0;
+            return false;
+        }
+        layout(lastSizes, itemCount, availableWidth);
+        return true;
+    }
+
+    /**
+     * @return true if each line of the last pass still fits into the available width and the
+     * first tag of the following line still does not
+     */
+    private boolean breaksLikeLastPass(int availableWidth) {
+        if (availableWidth == UNBOUNDED)
+            return lineCount <= 1;
+        for (int line = 0; line < lineCount; line++) {
+            if (availableWidth <= lineWidths[line] + widthOffset)
+                return false;
+            if (line + 1 < lineCount
+                    && availableWidth > lineWidths[line] + itemMargin + widths[lineStarts[line + 1]] + widthOffset)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * break tags into lines starting with a line at the given tag
+     *
+     * @param oldLineCount number of lines of the previous pass to compare with, -1 to break all tags
+     * @param removedCount number of tags removed since the previous pass, tag i was tag i + removedCount
+     * @param matchFrom    index of the first tag that is unchanged since the previous pass
+     */
+    private void breakLines(Measurer measurer, int start, int lineTop, int oldLineCount, int removedCount, int matchFrom) {
+        int count = itemCount;
+        int lineStart = start;
+        int lineHeight = 0;
+        // used width of the current line
+        int lineWidth = 0;
+        // true once a shown tag was placed in the current line
+        boolean lineUsed = false;
+        // first line of the previous pass that may start with the same tag as a new line
+        int oldLine = lineCount;
+        for (int i = start; i < count; i++) {
+            int width = measurer.getWidth(i);
+            if (width == GONE) {
+                widths[i] = 0;
+                heights[i] = 0;
+                lefts[i] = lineWidth;
+                continue;
+            }
+            int height = measurer.getHeight(i);
+
+            int needed = !lineUsed ? width : lineWidth + itemMargin + width;
+            if (availableWidth != UNBOUNDED && lineUsed && availableWidth <= needed + widthOffset) {
+                if (maxLines > 0 && lineCount + 1 >= maxLines) {
+                    // the remaining tags are not measured
+                    overflow(lineStart, i, lineTop);
+                    return;
+                }
+                // finish the current line and start a new one with this tag
+                closeLine(lineStart, i, lineTop, lineWidth, lineHeight);
+                lineTop += lineHeight + lineMargin;
+                if (oldLineCount >= 0 && i >= matchFrom) {
+                    while (oldLine < oldLineCount && previousLineStarts[oldLine] < i + removedCount)
+                        oldLine++;
+                    if (oldLine < oldLineCount && previousLineStarts[oldLine] == i + removedCount) {
+                        // the remaining tags break exactly like before
+                        shiftTail(i, lineTop, oldLine, oldLineCount, removedCount);
+                        return;
+                    }
+                }
+                lineStart = i;
+                lineHeight = 0;
+                needed = width;
+            }
+            widths[i] = width;
+            heights[i] = height;
+            lefts[i] = needed - width;
+            lineWidth = needed;
+            lineHeight = Math.max(lineHeight, height);
+            lineUsed = true;
+        }
+        if (lineUsed) {
+            closeLine(lineStart, count, lineTop, lineWidth, lineHeight);
+        } else {
+            // hidden tags at the end belong to the last line
+            int line = Math.max(0, lineCount - 1);
+            for (int i = lineStart; i < count; i++) {
+                itemLines[i] = line;
+                tops[i] = lineCount > 0 ? lineTops[line] : 0;
+            }
+        }
+        changedEnd = count;
+    }
+
+    /**
+     * end the last allowed line with the overflow chip, dropping tags from its end until the chip fits
+     *
+     * @param lineStart index of the first tag of the line
+     * @param end       index of the first tag that did not fit into the line
+     */
+    private void overflow(int lineStart, int end, int lineTop) {
+        int count = itemCount;
+        int lineWidth = usedWidth(lineStart, end);
+        int chipWidth = 0;
+        int chipHeight = 0;
+        if (overflowMeasurer != null) {
+            while (true) {
+                chipWidth = overflowMeasurer.getWidth(end);
+                chipHeight = overflowMeasurer.getHeight(end);
+                int needed = lineWidth == 0 ? chipWidth : lineWidth + itemMargin + chipWidth;
+                if (end == lineStart || availableWidth > needed + widthOffset)
+                    break;
+                end--;
+                lineWidth = usedWidth(lineStart, end);
+            }
+        }
+        int lineHeight = 0;
+        for (int i = lineStart; i < end; i++)
+            lineHeight = Math.max(lineHeight, heights[i]);
+        if (overflowMeasurer != null) {
+            overflowLeft = lineWidth == 0 ? 0 : lineWidth + itemMargin;
+            overflowWidth = chipWidth;
+            overflowHeight = chipHeight;
+            lineWidth = overflowLeft + chipWidth;
+            lineHeight = Math.max(lineHeight, chipHeight);
+            overflowTop = centerVertical ? lineTop + (lineHeight - chipHeight) / 2 : lineTop;
+        }
+        closeLine(lineStart, end, lineTop, lineWidth, lineHeight);
+        overflowStart = end;
+        int line = lineCount - 1;
+        for (int i = end; i < count; i++) {
+            lefts[i] = 0;
+            tops[i] = lineTop;
+            widths[i] = 0;
+            heights[i] = 0;
+            itemLines[i] = line;
+        }
+        changedEnd = count;
+    }
+
+    /**
+     * @return width used by the shown tags of a line up to a tag
+     */
+    private int usedWidth(int lineStart, int end) {
+        for (int i = end - 1; i >= lineStart; i--) {
+            if (widths[i] > 0)
+                return lefts[i] + widths[i];
+        }
+        return 0;
+    }
+
+    /**
+     * take over the lines of the previous pass from a line that starts with the same tag as before
+     *
+     * @param start   index of the first tag of the line
+     * @param lineTop new top of the line
+     * @param oldLine index of the line in the previous pass
+     */
+    private void shiftTail(int start, int lineTop, int oldLine, int oldLineCount, int removedCount) {
+        int count = itemCount;
+        if (removedCount > 0) {
+            int length = count - start;
+            System.arraycopy(lefts, start + removedCount, lefts, start, length);
+            System.arraycopy(tops, start + removedCount, tops, start, length);
+            System.arraycopy(widths, start + removedCount, widths, start, length);
+            System.arraycopy(heights, start + removedCount, heights, start, length);
+            System.arraycopy(itemLines, start + removedCount, itemLines, start, length);
+        }
+        int topShift = lineTop - previousLineTops[oldLine];
+        int lineShift = lineCount - oldLine;
+        if (topShift != 0 || lineShift != 0) {
+            for (int i = start; i < count; i++) {
+                tops[i] += topShift;
+                itemLines[i] += lineShift;
+            }
+        }
+
+        int tailLines = oldLineCount - oldLine;
+        ensureLineCapacity(lineCount + tailLines);
+        for (int line = 0; line < tailLines; line++) {
+            lineStarts[lineCount + line] = previousLineStarts[oldLine + line] - removedCount;
+            lineTops[lineCount + line] = previousLineTops[oldLine + line] + topShift;
+            lineHeights[lineCount + line] = previousLineHeights[oldLine + line];
+            lineWidths[lineCount + line] = previousLineWidths[oldLine + line];
+        }
+        lineCount += tailLines;
+        // tags of the shifted lines keep their offsets unless the lines moved up or down
+        changedEnd = topShift == 0 ? start : count;
+    }
+
+    /**
+     * record a finished line and set the top of its tags
+     */
+    private void closeLine(int start, int end, int lineTop, int lineWidth, int lineHeight) {
+        ensureLineCapacity(lineCount + 1);
+        lineStarts[lineCount] = start;
+        lineTops[lineCount] = lineTop;
+        lineHeights[lineCount] = lineHeight;
+        lineWidths[lineCount] = lineWidth;
+        for (int i = start; i < end; i++) {
+            itemLines[i] = lineCount;
+            tops[i] = centerVertical ? lineTop + (lineHeight - heights[i]) / 2 : lineTop;
+        }
+        lineCount++;
+    }
+
+    /**
+     * @param fromLine  first line that changed
+     * @param baseWidth width of the widest line before fromLine
+     */
+    private void updateContentSize(int fromLine, int baseWidth) {
+        contentWidth = baseWidth;
+        for (int line = fromLine; line < lineCount; line++)
+            contentWidth = Math.max(contentWidth, lineWidths[line]);
+        // every line, including the last one, is followed by the line margin
+        contentHeight = lineCount > 0 ? lineTops[lineCount - 1] + lineHeights[lineCount - 1] + lineMargin : 0;
+    }
+
+    /**
+     * @param y y offset in the content area
+     * @return index of the first line whose bottom is below y, or the line count if there is none
+     */
+    public int findLine(int y) {
+        int low = 0;
+        int high = lineCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lineTops[middle] + lineHeights[middle] <= y)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @param line line index
+     * @return index after the last tag of the line, tags that did not fit into the maximum number of lines are not part of it
+     */
+    public int getLineEnd(int line) {
+        return line + 1 < lineCount ? lineStarts[line + 1] : overflowStart;
+    }
+
+    private void ensureItemCapacity(int count) {
+        if (lefts.length >= count)
+            return;
+        int capacity = Math.max(count, lefts.length * 3 / 2);
+        // appending keeps the offsets of the tags laid out before
+        lefts = copyOf(lefts, capacity);
+        tops = copyOf(tops, capacity);
+        widths = copyOf(widths, capacity);
+        heights = copyOf(heights, capacity);
+        itemLines = copyOf(itemLines, capacity);
+    }
+
+    private void ensureLineCapacity(int count) {
+        if (lineStarts.length >= count)
+            return;
+        int capacity = Math.max(Math.max(count, 8), lineStarts.length * 2);
+        lineStarts = copyOf(lineStarts, capacity);
+        lineTops = copyOf(lineTops, capacity);
+        lineHeights = copyOf(lineHeights, capacity);
+        lineWidths = copyOf(lineWidths, capacity);
+    }
+
+    private void ensurePreviousLineCapacity(int count) {
+        if (previousLineStarts.length >= count)
+            return;
+        int capacity = lineStarts.length;
+        previousLineStarts = new int[capacity];
+        previousLineTops = new int[capacity];
+        previousLineHeights = new int[capacity];
+        previousLineWidths = new int[capacity];
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    public int getItemMargin() {
+        return itemMargin;
+    }
+
+    public void setItemMargin(int itemMargin) {
+        if (this.itemMargin != itemMargin)
+            settingsChanged = true;
+        this.itemMargin = itemMargin;
+    }
+
+    public int getLineMargin() {
+        return lineMargin;
+    }
+
+    public void setLineMargin(int lineMargin) {
+        if (this.lineMargin != lineMargin)
+            settingsChanged = true;
+        this.lineMargin = lineMargin;
+    }
+
+    public int getWidthOffset() {
+        return widthOffset;
+    }
+
+    public void setWidthOffset(int widthOffset) {
+        if (this.widthOffset != widthOffset)
+            settingsChanged = true;
+        this.widthOffset = widthOffset;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    /**
+     * limit the number of lines in multiline mode, tags that do not fit are neither measured nor placed
+     *
+     * @param maxLines         maximum number of lines, 0 for no limit
+     * @param overflowMeasurer size of the chip ending the last line if tags do not fit, null for no chip
+     */
+    public void setMaxLines(int maxLines, OverflowMeasurer overflowMeasurer) {
+        if (this.maxLines != maxLines || this.overflowMeasurer != overflowMeasurer)
+            settingsChanged = true;
+        this.maxLines = maxLines;
+        this.overflowMeasurer = overflowMeasurer;
+    }
+
+    public boolean isCenterVertical() {
+        return centerVertical;
+    }
+
+    public void setCenterVertical(boolean centerVertical) {
+        if (this.centerVertical != centerVertical)
+            settingsChanged = true;
+        this.centerVertical = centerVertical;
+    }
+
+    /**
+     * @return number of tags of the last pass, the item arrays are valid up to this index
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return x offset of each tag
+     */
+    public int[] getLefts() {
+        return lefts;
+    }
+
+    /**
+     * @return y offset of each tag
+     */
+    public int[] getTops() {
+        return tops;
+    }
+
+    public int[] getWidths() {
+        return widths;
+    }
+
+    public int[] getHeights() {
+        return heights;
+    }
+
+    /**
+     * @return line index of each tag
+     */
+    public int[] getItemLines() {
+        return itemLines;
+    }
+
+    /**
+     * @return number of lines of the last pass, the line arrays are valid up to this index
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return index of the first tag of each line
+     */
+    public int[] getLineStarts() {
+        return lineStarts;
+    }
+
+    public int[] getLineTops() {
+        return lineTops;
+    }
+
+    public int[] getLineHeights() {
+        return lineHeights;
+    }
+
+    public int[] getLineWidths() {
+        return lineWidths;
+    }
+
+    /**
+     * @return available width of the last pass
+     */
+    public int getAvailableWidth() {
+        return availableWidth;
+    }
+
+    /**
+     * @return index of the first tag whose offset may have changed in the last pass
+     */
+    public int getChangedStart() {
+        return changedStart;
+    }
+
+    /**
+     * @return index after the last tag whose offset may have changed in the last pass, tags from
+     * here on only moved to a lower index if tags were removed
+     */
+    public int getChangedEnd() {
+        return changedEnd;
+    }
+
+    /**
+     * @return index of the first tag that did not fit into the maximum number of lines, the item count if all tags fit
+     */
+    public int getOverflowStart() {
+        return overflowStart;
+    }
+
+    /**
+     * @return x offset of the overflow chip, its offset and size are 0 if there is none
+     */
+    public int getOverflowLeft() {
+        return overflowLeft;
+    }
+
+    public int getOverflowTop() {
+        return overflowTop;
+    }
+
+    public int getOverflowWidth() {
+        return overflowWidth;
+    }
+
+    public int getOverflowHeight() {
+        return overflowHeight;
+    }
+
+    /**
+     * @return width of the widest line
+     */
+    public int getContentWidth() {
+        return contentWidth;
+    }
+
+    /**
+     * @return height of all lines including their line margins
+     */
+    public int getContentHeight() {
+        return contentHeight;
+    }
+}
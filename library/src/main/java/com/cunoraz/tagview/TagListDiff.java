@@ -0,0 +1,121 @@
+package com.cunoraz.tagview;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Difference between the tag items shown by a {@link TagView} and a new tag item list.
+ * Items are matched by {@link TagItem#getKey()}, items without key only by instance,
+ * items with the same key are matched in list order.
+ * Calculating a diff does not touch any view, so it can run on a background thread.
+ */
+class TagListDiff {
+
+    /**
+     * for each new position, the old position of the same item or -1 for inserted items
+     */
+    final int[] newToOld;
+
+    /**
+     * for each old position, the new position of the same item or -1 for removed items
+     */
+    final int[] oldToNew;
+
+    /**
+     * for each new position, true if the item has to be bound again
+     */
+    final boolean[] changed;
+
+    /**
+     * first new position whose item was inserted, moved or changed, or that follows a removed
+     * item, or the new size if there is none. Lines before it are kept by the next layout pass
+     */
+    final int firstChangedPosition;
+
+    final int removedCount;
+
+    private TagListDiff(int[] newToOld, int[] oldToNew, boolean[] changed, int firstChangedPosition, int removedCount) {
+        this.newToOld = newToOld;
+        this.oldToNew = oldToNew;
+        this.changed = changed;
+        this.firstChangedPosition = firstChangedPosition;
+        this.removedCount = removedCount;
+    }
+
+    /**
+     * @return true if no item was inserted, removed, moved or changed
+     */
+    boolean isEmpty() {
+        return firstChangedPosition == newToOld.length && removedCount == 0;
+    }
+
+    /**
+     * calculate the difference between two tag item lists
+     *
+     * @param oldItems     items currently bound to views
+     * @param oldModCounts {@link TagItem#getModCount()} of the old items when they were bound
+     * @param newItems     items to show
+     * @return diff of the lists
+     */
+    static TagListDiff calculate(List<TagItem> oldItems, int[] oldModCounts, List<TagItem> newItems) {
+        int oldSize = oldItems.size();
+        int newSize = newItems.size();
+
+        // chain old positions by key, so that equal keys are matched in list order
+        HashMap<Object, Integer> firstOldByKey = new HashMap<>(oldSize * 2);
+        int[] nextOldSameKey = new int[oldSize];
+        for (int i = oldSize - 1; i >= 0; i--) {
+            Integer next = firstOldByKey.put(oldItems.get(i).getDiffKey(), i);
+            nextOldSameKey[i] = next == null ? -1 : next;
+        }
+
+        int[] oldToNew = new int[oldSize];
+        for (int i = 0; i < oldSize; i++)
+            oldToNew[i] = -1;
+        int[] newToOld = new int[newSize];
+        boolean[] changed = new boolean[newSize];
+        int firstChangedPosition = newSize;
+        // old position expected for the next item if nothing moved since the last match
+        int expectedOld = 0;
+
+        for (int i = 0; i < newSize; i++) {
+            TagItem newItem = newItems.get(i);
+            Object key = newItem.getDiffKey();
+            Integer old = firstOldByKey.get(key);
+            if (old == null) {
+                newToOld[i] = -1;
+                firstChangedPosition = Math.min(firstChangedPosition, i);
+                continue;
+            }
+            int oldPosition = old;
+            int next = nextOldSameKey[oldPosition];
+            if (next < 0)
+                firstOldByKey.remove(key);
+            else
+                firstOldByKey.put(key, next);
+
+            newToOld[i] = oldPosition;
+            oldToNew[oldPosition] = i;
+            TagItem oldItem = oldItems.get(oldPosition);
+            changed[i] = oldItem != newItem
+                    ? !oldItem.hasSameContent(newItem)
+                    : oldModCounts[oldPosition] != newItem.getModCount();
+            if (changed[i] || oldPosition != expectedOld)
+                firstChangedPosition = Math.min(firstChangedPosition, i);
+            expectedOld = oldPosition + 1;
+        }
+
+        int removedCount = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (oldToNew[i] >= 0)
+                continue;
+            if (removedCount == 0) {
+                // all items before the first removed one are matched, the ones after it move up
+                int newPosition = i == 0 ? 0 : oldToNew[i - 1] + 1;
+                firstChangedPosition = Math.min(firstChangedPosition, newPosition);
+            }
+            removedCount++;
+        }
+        return new TagListDiff(newToOld, oldToNew, changed, firstChangedPosition, removedCount);
+    }
+}
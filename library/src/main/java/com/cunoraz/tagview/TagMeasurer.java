@@ -0,0 +1,363 @@
+package com.cunoraz.tagview;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.util.TypedValue;
+
+import java.util.List;
+
+/**
+ * Sizes of tags calculated from their texts, without any view. Sizes match the ones of
+ * {@link R.layout#tagview_item} views. The sizes of a tag are kept until the tag item is
+ * modified or replaced, so a new pass only calculates changed tags.
+ * Not thread safe; a measurer filled on a background thread is handed to the main thread once done.
+ */
+class TagMeasurer implements TagLayoutEngine.Measurer {
+
+    private final DisplayMetrics displayMetrics;
+
+    private final TextPaint textPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * font metrics by text size in pixels
+     */
+    private final SparseArray<Paint.FontMetricsInt> fontMetricsCache = new SparseArray<>();
+
+    private int textPaddingLeft;
+
+    private int textPaddingTop;
+
+    private int textPaddingRight;
+
+    private int textPaddingBottom;
+
+    /**
+     * space on both sides of the delete indicator
+     */
+    private int deleteOffset;
+
+    /**
+     * tag items and their modification counts the sizes were calculated for
+     */
+    private TagItem[] measuredItems = new TagItem[0];
+
+    private int[] measuredModCounts = new int[0];
+
+    /**
+     * per tag results of the last pass
+     */
+    private int[] widths = new int[0];
+
+    private int[] fullWidths = new int[0];
+
+    private int[] heights = new int[0];
+
+    private int[] textWidths = new int[0];
+
+    private int[] fullTextWidths = new int[0];
+
+    private int[] deleteWidths = new int[0];
+
+    /**
+     * ellipsized text of tags wider than the maximum tag width, null for all other tags
+     */
+    private CharSequence[] clippedTexts = new CharSequence[0];
+
+    /**
+     * counters of the view that owns this measurer, null while it is filled on a background thread
+     */
+    private TagViewMetrics metrics;
+
+    TagMeasurer(DisplayMetrics displayMetrics) {
+        this.displayMetrics = displayMetrics;
+    }
+
+    /**
+     * count the text width cache lookups of this measurer for a view
+     */
+    void setMetrics(TagViewMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * set paddings and offsets of a tag, sizes of all tags are calculated again if they changed
+     */
+    void setTextPaddings(int left, int top, int right, int bottom, int deleteOffset) {
+        if (textPaddingLeft == left && textPaddingTop == top && textPaddingRight == right
+                && textPaddingBottom == bottom && this.deleteOffset == deleteOffset)
+            return;
+        textPaddingLeft = left;
+        textPaddingTop = top;
+        textPaddingRight = right;
+        textPaddingBottom = bottom;
+        this.deleteOffset = deleteOffset;
+        invalidate();
+    }
+
+    /**
+     * set the typeface of the tag texts, sizes of all tags are calculated again if it changed
+     *
+     * @return true if the typeface changed
+     */
+    boolean setTypeface(Typeface typeface) {
+        if (textPaint.getTypeface() == typeface)
+            return false;
+        textPaint.setTypeface(typeface);
+        fontMetricsCache.clear();
+        invalidate();
+        return true;
+    }
+
+    TextPaint getTextPaint() {
+        return textPaint;
+    }
+
+    /**
+     * forget all calculated sizes
+     */
+    void invalidate() {
+        for (int i = 0; i < measuredItems.length; i++)
+            measuredItems[i] = null;
+    }
+
+    /**
+     * drop the sizes of a removed tag, the sizes of the following tags move down by one index
+     *
+     * @param index index of the removed tag
+     */
+    void remove(int index) {
+        int length = widths.length - index - 1;
+        if (length < 0)
+            return;
+        System.arraycopy(measuredItems, index + 1, measuredItems, index, length);
+        System.arraycopy(measuredModCounts, index + 1, measuredModCounts, index, length);
+        System.arraycopy(widths, index + 1, widths, index, length);
+        System.arraycopy(fullWidths, index + 1, fullWidths, index, length);
+        System.arraycopy(heights, index + 1, heights, index, length);
+        System.arraycopy(textWidths, index + 1, textWidths, index, length);
+        System.arraycopy(fullTextWidths, index + 1, fullTextWidths, index, length);
+        System.arraycopy(deleteWidths, index + 1, deleteWidths, index, length);
+        System.arraycopy(clippedTexts, index + 1, clippedTexts, index, length);
+        measuredItems[widths.length - 1] = null;
+    }
+
+    /**
+     * calculate the size of every tag
+     *
+     * @param items          tags to measure
+     * @param maxTagWidth    maximum width of a tag, or {@link TagLayoutEngine#UNBOUNDED}
+     * @param textWidthCache cache of text widths
+     * @return widest tag before it was limited to the maximum width
+     */
+    int measure(List<TagItem> items, int maxTagWidth, TextWidthCache textWidthCache) {
+        return measure(items, 0, maxTagWidth, textWidthCache);
+    }
+
+    /**
+     * calculate the size of the tags from an index on, the sizes of the tags before are kept
+     *
+     * @param items          tags to measure
+     * @param start          index of the first tag to measure
+     * @param maxTagWidth    maximum width of a tag, or {@link TagLayoutEngine#UNBOUNDED}
+     * @param textWidthCache cache of text widths
+     * @return widest measured tag before it was limited to the maximum width
+     */
+    int measure(List<TagItem> items, int start, int maxTagWidth, TextWidthCache textWidthCache) {
+        int count = items.size();
+        ensureCapacity(count);
+        int widest = 0;
+        for (int i = start; i < count; i++)
+            widest = Math.max(widest, measure(i, items.get(i), maxTagWidth, textWidthCache));
+        return widest;
+    }
+
+    /**
+     * calculate the size of a single tag, {@link #ensureCapacity(int)} has to be called for the number of tags first
+     *
+     * @param index          index of the tag
+     * @param tagItem        tag to measure
+     * @param maxTagWidth    maximum width of a tag, or {@link TagLayoutEngine#UNBOUNDED}
+     * @param textWidthCache cache of text widths
+     * @return width of the tag before it was limited to the maximum width
+     */
+    int measure(int index, TagItem tagItem, int maxTagWidth, TextWidthCache textWidthCache) {
+        if (measuredItems[index] != tagItem || measuredModCounts[index] != tagItem.getModCount()) {
+            measureTag(index, tagItem, textWidthCache);
+            measuredItems[index] = tagItem;
+            measuredModCounts[index] = tagItem.getModCount();
+        }
+        clip(index, tagItem, maxTagWidth);
+        return fullWidths[index];
+    }
+
+    /**
+     * calculate the width of a tag that is not in the list, like the overflow chip. Its text is
+     * drawn with the text size of a tag item, without delete indicator. The text width is not
+     * cached, such labels change with every layout
+     *
+     * @param tagItem tag item the text size is taken from
+     * @param text    text of the tag
+     */
+    int measureWidth(TagItem tagItem, CharSequence text) {
+        setTextSize(tagItem.getTagTextSize());
+        return textPaddingLeft + (int) Math.ceil(textPaint.measureText(text, 0, text.length())) + textPaddingRight;
+    }
+
+    /**
+     * calculate the height of a tag that is not in the list, see {@link #measureWidth(TagItem, CharSequence)}
+     */
+    int measureHeight(TagItem tagItem) {
+        setTextSize(tagItem.getTagTextSize());
+        return textPaddingTop + getLineHeight() + textPaddingBottom;
+    }
+
+    private void measureTag(int index, TagItem tagItem, TextWidthCache textWidthCache) {
+        setTextSize(tagItem.getTagTextSize());
+        int textWidth = (int) Math.ceil(textWidthCache.measureText(textPaint, tagItem.getText(), metrics));
+        int contentHeight = getLineHeight();
+        int width = textPaddingLeft + textWidth + textPaddingRight;
+        int deleteWidth = 0;
+        if (tagItem.isDeletable()) {
+            setTextSize(tagItem.getDeleteIndicatorSize());
+            deleteWidth = (int) Math.ceil(textWidthCache.measureText(textPaint, tagItem.getDeleteIndicator(), metrics));
+            width += deleteOffset + deleteWidth + textPaddingRight + deleteOffset;
+            contentHeight = Math.max(contentHeight, getLineHeight());
+        }
+        fullWidths[index] = width;
+        heights[index] = textPaddingTop + contentHeight + textPaddingBottom;
+        deleteWidths[index] = deleteWidth;
+        fullTextWidths[index] = textWidth;
+        clippedTexts[index] = null;
+    }
+
+    /**
+     * limit a tag to the maximum width, shrinking its text like the ellipsized text view of a tag
+     */
+    private void clip(int index, TagItem tagItem, int maxTagWidth) {
+        int fullWidth = fullWidths[index];
+        if (maxTagWidth == TagLayoutEngine.UNBOUNDED || fullWidth <= maxTagWidth) {
+            widths[index] = fullWidth;
+            textWidths[index] = fullTextWidths[index];
+            clippedTexts[index] = null;
+            return;
+        }
+        int textWidth = Math.max(0, fullTextWidths[index] - (fullWidth - maxTagWidth));
+        if (widths[index] != maxTagWidth || clippedTexts[index] == null) {
+            setTextSize(tagItem.getTagTextSize());
+            clippedTexts[index] = TextUtils.ellipsize(tagItem.getText(), textPaint, textWidth, TextUtils.TruncateAt.END);
+        }
+        widths[index] = maxTagWidth;
+        textWidths[index] = textWidth;
+    }
+
+    void ensureCapacity(int count) {
+        if (widths.length >= count)
+            return;
+        int capacity = Math.max(count, widths.length * 3 / 2);
+        measuredItems = copyOf(measuredItems, capacity);
+        measuredModCounts = copyOf(measuredModCounts, capacity);
+        widths = copyOf(widths, capacity);
+        fullWidths = copyOf(fullWidths, capacity);
+        heights = copyOf(heights, capacity);
+        textWidths = copyOf(textWidths, capacity);
+        fullTextWidths = copyOf(fullTextWidths, capacity);
+        deleteWidths = copyOf(deleteWidths, capacity);
+        CharSequence[] texts = new CharSequence[capacity];
+        System.arraycopy(clippedTexts, 0, texts, 0, clippedTexts.length);
+        clippedTexts = texts;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static TagItem[] copyOf(TagItem[] array, int length) {
+        TagItem[] copy = new TagItem[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    @Override
+    public int getWidth(int index) {
+        return widths[index];
+    }
+
+    @Override
+    public int getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * @return width of the possibly ellipsized tag text
+     */
+    int getTextWidth(int index) {
+        return textWidths[index];
+    }
+
+    int getDeleteWidth(int index) {
+        return deleteWidths[index];
+    }
+
+    /**
+     * @return text to draw for a tag
+     */
+    CharSequence getText(int index, TagItem tagItem) {
+        return clippedTexts[index] != null ? clippedTexts[index] : tagItem.getText();
+    }
+
+    int getTextPaddingLeft() {
+        return textPaddingLeft;
+    }
+
+    int getTextPaddingTop() {
+        return textPaddingTop;
+    }
+
+    int getTextPaddingRight() {
+        return textPaddingRight;
+    }
+
+    int getTextPaddingBottom() {
+        return textPaddingBottom;
+    }
+
+    int getDeleteOffset() {
+        return deleteOffset;
+    }
+
+    /**
+     * set the text size of the paint returned by {@link #getTextPaint()}
+     *
+     * @param sizeSp text size in sp
+     */
+    void setTextSize(float sizeSp) {
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, sizeSp, displayMetrics));
+    }
+
+    /**
+     * @return height of a single text line with font padding, like a text view, for the current text size
+     */
+    int getLineHeight() {
+        Paint.FontMetricsInt fontMetrics = getFontMetrics();
+        return fontMetrics.bottom - fontMetrics.top;
+    }
+
+    /**
+     * @return font metrics for the current text size
+     */
+    Paint.FontMetricsInt getFontMetrics() {
+        int key = Float.floatToIntBits(textPaint.getTextSize());
+        Paint.FontMetricsInt fontMetrics = fontMetricsCache.get(key);
+        if (fontMetrics == null) {
+            fontMetrics = textPaint.getFontMetricsInt();
+            fontMetricsCache.put(key, fontMetrics);
+        }
+        return fontMetrics;
+    }
+}
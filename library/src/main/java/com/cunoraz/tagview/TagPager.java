@@ -0,0 +1,165 @@
+package com.cunoraz.tagview;
+
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Window of consecutive pages of a {@link TagDataSource} shown by a {@link TagView}.
+ * Pages are loaded one at a time at either end of the window; once more pages are resident
+ * than allowed, the page at the other end is dropped and loaded again when it is needed.
+ * Only used from the main thread.
+ */
+class TagPager {
+
+    private final TagView tagView;
+
+    private final TagDataSource dataSource;
+
+    private int maxResidentPages;
+
+    /**
+     * index of the first resident page
+     */
+    private int firstPage;
+
+    /**
+     * number of tags of each resident page, in page order
+     */
+    private final ArrayDeque<Integer> pageSizes = new ArrayDeque<>();
+
+    /**
+     * index of the last page of the source, or -1 while it is not known
+     */
+    private int lastPage = -1;
+
+    private boolean loading;
+
+    /**
+     * callback of the load in progress, results delivered to any other callback are dropped
+     */
+    private TagDataSource.LoadCallback loadCallback;
+
+    /**
+     * set once the view stopped using this pager, pages delivered afterwards are dropped
+     */
+    private boolean released;
+
+    TagPager(TagView tagView, TagDataSource dataSource, int maxResidentPages) {
+        this.tagView = tagView;
+        this.dataSource = dataSource;
+        this.maxResidentPages = maxResidentPages;
+    }
+
+    void setMaxResidentPages(int maxResidentPages) {
+        this.maxResidentPages = maxResidentPages;
+    }
+
+    boolean isLoading() {
+        return loading;
+    }
+
+    void release() {
+        released = true;
+        cancel();
+    }
+
+    /**
+     * abandon the load in progress, a result delivered for it later is dropped and the page is
+     * requested again when it is needed
+     */
+    void cancel() {
+        loading = false;
+        loadCallback = null;
+    }
+
+    /**
+     * load the page after the last resident one, unless the end of the source was reached
+     */
+    void loadNext() {
+        int page = firstPage + pageSizes.size();
+        if (loading || (lastPage >= 0 && page > lastPage))
+            return;
+        load(page, true);
+    }
+
+    /**
+     * load the page before the first resident one, if it was dropped before
+     */
+    void loadPrevious() {
+        if (loading || firstPage == 0)
+            return;
+        load(firstPage - 1, false);
+    }
+
+    private void load(final int page, final boolean atEnd) {
+        loading = true;
+        TagDataSource.LoadCallback callback = new TagDataSource.LoadCallback() {
+            @Override
+            public void onPageLoaded(final List<TagItem> tagItems, final boolean lastPage) {
+                final TagDataSource.LoadCallback callback = this;
+                runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (finishLoad(callback))
+                            applyPage(page, atEnd, tagItems, lastPage);
+                    }
+                });
+            }
+
+            @Override
+            public void onPageLoadFailed(Throwable error) {
+                final TagDataSource.LoadCallback callback = this;
+                runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishLoad(callback);
+                    }
+                });
+            }
+        };
+        loadCallback = callback;
+        dataSource.loadPage(page, callback);
+    }
+
+    /**
+     * end the load of a callback, so that the next page can be requested
+     *
+     * @return true if the callback belongs to the load in progress, false if that load was cancelled
+     */
+    private boolean finishLoad(TagDataSource.LoadCallback callback) {
+        if (released || callback != loadCallback)
+            return false;
+        loading = false;
+        loadCallback = null;
+        return true;
+    }
+
+    private static void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper())
+            runnable.run();
+        else
+            TagExecutors.main().post(runnable);
+    }
+
+    private void applyPage(int page, boolean atEnd, List<TagItem> tagItems, boolean isLastPage) {
+        if (isLastPage)
+            lastPage = page;
+        int size = tagItems != null ? tagItems.size() : 0;
+        int dropCount = 0;
+        if (atEnd) {
+            pageSizes.addLast(size);
+            if (pageSizes.size() > maxResidentPages) {
+                dropCount = pageSizes.removeFirst();
+                firstPage++;
+            }
+        } else {
+            pageSizes.addFirst(size);
+            firstPage = page;
+            if (pageSizes.size() > maxResidentPages)
+                dropCount = pageSizes.removeLast();
+        }
+        tagView.applyPage(tagItems, atEnd, dropCount);
+    }
+}
@@ -0,0 +1,334 @@
+package com.cunoraz.tagview;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.ColorInt;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable look of a tag, shared by all {@link TagItem}s that look the same.
+ * Instances are interned, two styles with the same values are the same object, so tags can be
+ * compared by style identity. A style is changed by creating a new one with the with-methods,
+ * the default style of a context is resolved from resources only once.
+ */
+public final class TagStyle {
+
+    /**
+     * interned styles, a style is dropped once no tag item references it anymore
+     */
+    private static final WeakHashMap<TagStyle, WeakReference<TagStyle>> interned = new WeakHashMap<>();
+
+    /**
+     * default style of each context
+     */
+    private static final WeakHashMap<Context, TagStyle> defaults = new WeakHashMap<>();
+
+    /**
+     * Tag item text color resource int
+     */
+    private final int tagTextColor;
+
+    /**
+     * Tag item size in sp
+     */
+    private final float tagTextSize;
+
+    /**
+     * Tag item background color resource
+     */
+    private final int layoutColor;
+
+    /**
+     * Tag item background color resource in pressed state.
+     */
+    private final int layoutColorPress;
+
+    /**
+     * boolean to allow removing tag item
+     */
+    private final boolean isDeletable;
+
+    /**
+     * String to be displayed delete indicator, usually one character is preferred
+     */
+    private final String deleteIndicator;
+
+    /**
+     * Color resource int for the delete indicator
+     */
+    private final int deleteIndicatorColor;
+
+    /**
+     * Size in sp for delete indicator
+     */
+    private final float deleteIndicatorSize;
+
+    /**
+     * border corner radius value in pixels
+     */
+    private final float borderRadius;
+
+    /**
+     * size of border to be shown in dp
+     */
+    private final float layoutBorderSize;
+
+    /**
+     * Color resource int
+     */
+    private final int layoutBorderColor;
+
+    /**
+     * custom background drawable, compared by identity
+     */
+    private final Drawable background;
+
+    private final int hashCode;
+
+    private TagStyle(int tagTextColor, float tagTextSize, int layoutColor, int layoutColorPress,
+                     boolean isDeletable, String deleteIndicator, int deleteIndicatorColor,
+                     float deleteIndicatorSize, float borderRadius, float layoutBorderSize,
+                     int layoutBorderColor, Drawable background) {
+        this.tagTextColor = tagTextColor;
+        this.tagTextSize = tagTextSize;
+        this.layoutColor = layoutColor;
+        this.layoutColorPress = layoutColorPress;
+        this.isDeletable = isDeletable;
+        this.deleteIndicator = deleteIndicator;
+        this.deleteIndicatorColor = deleteIndicatorColor;
+        this.deleteIndicatorSize = deleteIndicatorSize;
+        this.borderRadius = borderRadius;
+        this.layoutBorderSize = layoutBorderSize;
+        this.layoutBorderColor = layoutBorderColor;
+        this.background = background;
+        this.hashCode = calculateHashCode();
+    }
+
+    /**
+     * get the default style, with the colors and delete indicator of the library resources.
+     * Resources are only read the first time for a context.
+     *
+     * @param context context to resolve the resources with
+     * @return shared default style
+     */
+    public static TagStyle getDefault(Context context) {
+        synchronized (defaults) {
+            TagStyle style = defaults.get(context);
+            if (style == null) {
+                style = intern(new TagStyle(
+                        ContextCompat.getColor(context, R.color.primaryTextColor),
+                        Constants.DEFAULT_TAG_TEXT_SIZE,
+                        ContextCompat.getColor(context, R.color.primaryLightColor),
+                        ContextCompat.getColor(context, R.color.primaryColor),
+                        Constants.DEFAULT_TAG_IS_DELETABLE,
+                        context.getResources().getString(R.string.default_delete_icon),
+                        ContextCompat.getColor(context, R.color.primaryTextColor),
+                        Constants.DEFAULT_TAG_DELETE_INDICATOR_SIZE,
+                        Constants.DEFAULT_TAG_RADIUS_PIXELS,
+                        Constants.DEFAULT_TAG_LAYOUT_BORDER_SIZE,
+                        ContextCompat.getColor(context, R.color.primaryColor),
+                        null));
+                defaults.put(context, style);
+            }
+            return style;
+        }
+    }
+
+    /**
+     * @return the shared instance equal to the given style
+     */
+    private static TagStyle intern(TagStyle style) {
+        synchronized (interned) {
+            WeakReference<TagStyle> reference = interned.get(style);
+            TagStyle existing = reference != null ? reference.get() : null;
+            if (existing != null)
+                return existing;
+            interned.put(style, new WeakReference<>(style));
+            return style;
+        }
+    }
+
+    public int getTagTextColor() {
+        return tagTextColor;
+    }
+
+    public TagStyle withTagTextColor(@ColorInt int tagTextColor) {
+        if (this.tagTextColor == tagTextColor)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public float getTagTextSize() {
+        return tagTextSize;
+    }
+
+    public TagStyle withTagTextSize(float tagTextSizeSp) {
+        if (tagTextSize == tagTextSizeSp)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSizeSp, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public int getLayoutColor() {
+        return layoutColor;
+    }
+
+    public TagStyle withLayoutColor(@ColorInt int layoutColor) {
+        if (this.layoutColor == layoutColor)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public int getLayoutColorPress() {
+        return layoutColorPress;
+    }
+
+    public TagStyle withLayoutColorPress(@ColorInt int layoutColorPress) {
+        if (this.layoutColorPress == layoutColorPress)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public boolean isDeletable() {
+        return isDeletable;
+    }
+
+    public TagStyle withDeletable(boolean deletable) {
+        if (isDeletable == deletable)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, deletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public String getDeleteIndicator() {
+        return deleteIndicator;
+    }
+
+    public TagStyle withDeleteIndicator(String deleteIndicator) {
+        if (equals(this.deleteIndicator, deleteIndicator))
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public int getDeleteIndicatorColor() {
+        return deleteIndicatorColor;
+    }
+
+    public TagStyle withDeleteIndicatorColor(@ColorInt int deleteIndicatorColor) {
+        if (this.deleteIndicatorColor == deleteIndicatorColor)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public float getDeleteIndicatorSize() {
+        return deleteIndicatorSize;
+    }
+
+    public TagStyle withDeleteIndicatorSize(float deleteIndicatorSize) {
+        if (this.deleteIndicatorSize == deleteIndicatorSize)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public float getBorderRadius() {
+        return borderRadius;
+    }
+
+    public TagStyle withBorderRadius(float pixelSize) {
+        if (borderRadius == pixelSize)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, pixelSize, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public float getLayoutBorderSize() {
+        return layoutBorderSize;
+    }
+
+    public TagStyle withLayoutBorderSize(float layoutBorderSize) {
+        if (this.layoutBorderSize == layoutBorderSize)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    public int getLayoutBorderColor() {
+        return layoutBorderColor;
+    }
+
+    public TagStyle withLayoutBorderColor(@ColorInt int layoutBorderColor) {
+        if (this.layoutBorderColor == layoutBorderColor)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    @Nullable
+    public Drawable getBackground() {
+        return background;
+    }
+
+    public TagStyle withBackground(Drawable background) {
+        if (this.background == background)
+            return this;
+        return intern(new TagStyle(tagTextColor, tagTextSize, layoutColor, layoutColorPress, isDeletable, deleteIndicator,
+                deleteIndicatorColor, deleteIndicatorSize, borderRadius, layoutBorderSize, layoutBorderColor, background));
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof TagStyle))
+            return false;
+        TagStyle style = (TagStyle) o;
+        return hashCode == style.hashCode
+                && tagTextColor == style.tagTextColor
+                && tagTextSize == style.tagTextSize
+                && layoutColor == style.layoutColor
+                && layoutColorPress == style.layoutColorPress
+                && isDeletable == style.isDeletable
+                && deleteIndicatorColor == style.deleteIndicatorColor
+                && deleteIndicatorSize == style.deleteIndicatorSize
+                && borderRadius == style.borderRadius
+                && layoutBorderSize == style.layoutBorderSize
+                && layoutBorderColor == style.layoutBorderColor
+                && background == style.background
+                && equals(deleteIndicator, style.deleteIndicator);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    private int calculateHashCode() {
+        int result = tagTextColor;
+        result = 31 * result + Float.floatToIntBits(tagTextSize);
+        result = 31 * result + layoutColor;
+        result = 31 * result + layoutColorPress;
+        result = 31 * result + (isDeletable ? 1 : 0);
+        result = 31 * result + (deleteIndicator != null ? deleteIndicator.hashCode() : 0);
+        result = 31 * result + deleteIndicatorColor;
+        result = 31 * result + Float.floatToIntBits(deleteIndicatorSize);
+        result = 31 * result + Float.floatToIntBits(borderRadius);
+        result = 31 * result + Float.floatToIntBits(layoutBorderSize);
+        result = 31 * result + layoutBorderColor;
+        result = 31 * result + System.identityHashCode(background);
+        return result;
+    }
+}
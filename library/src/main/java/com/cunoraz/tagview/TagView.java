@@ -3,22 +3,34 @@ package com.cunoraz.tagview;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.GradientDrawable;
-import android.graphics.drawable.StateListDrawable;
+import android.os.Trace;
 import android.util.AttributeSet;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
 import android.util.TypedValue;
-import android.view.LayoutInflater;
+import android.view.Choreographer;
+import android.view.GestureDetector;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.ViewTreeObserver;
 import android.widget.LinearLayout;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-public class TagView extends RelativeLayout {
+/**
+ * Flow layout of tags. Tags are placed left to right and wrapped to a new line when the
+ * width is used up, or kept in a single row when {@link #isHorizontalScrollable()} is set.
+ */
+public class TagView extends ViewGroup {
 
     /**
      * tagItem list
@@ -26,11 +38,35 @@ public class TagView extends RelativeLayout {
     private List<TagItem> tagItemList = new ArrayList<>();
 
     /**
-     * System Service
+     * tag items bound to the child views, in child order. Differs from {@link #tagItemList}
+     * until the next rebuild applied the changes
      */
-    private LayoutInflater mInflater;
+    private List<TagItem> renderedItems = new ArrayList<>();
 
-    private ViewTreeObserver mViewTreeObserver;
+    /**
+     * {@link TagItem#getModCount()} of the rendered items when they were bound
+     */
+    private int[] renderedModCounts = new int[0];
+
+    /**
+     * incremented on each rebuild, results of an outdated background diff are dropped
+     */
+    private volatile int renderGeneration;
+
+    /**
+     * lists with at least this many tags are diffed on a background thread
+     */
+    private int asyncDiffThreshold = Constants.DEFAULT_ASYNC_DIFF_THRESHOLD;
+
+    /**
+     * tag item views detached from this view, rebound on the next rebuild
+     */
+    private final TagViewPool viewPool = new TagViewPool(Constants.DEFAULT_RECYCLE_POOL_SIZE);
+
+    /**
+     * widths of tag and delete indicator texts, reused across rebuilds, width changes and list swaps
+     */
+    private TextWidthCache textWidthCache = TextWidthCache.getSharedInstance();
 
     /**
      * listeners
@@ -42,14 +78,136 @@ public class TagView extends RelativeLayout {
     private OnTagItemLongClickListener tagItemLongClickListener;
 
     /**
-     * view size param
+     * listeners shared by all tag views, the position is resolved from the clicked view
+     */
+    private final OnClickListener tagClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int position = getChildPosition(v);
+            if (tagItemClickListener != null && position >= 0) {
+                tagItemClickListener.onTagClick(renderedItems.get(position), position);
+            }
+        }
+    };
+
+    private final OnLongClickListener tagLongClickListener = new OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            int position = getChildPosition(v);
+            if (tagItemLongClickListener != null && position >= 0) {
+                tagItemLongClickListener.onTagLongClick(renderedItems.get(position), position);
+            }
+            return true;
+        }
+    };
+
+    private final OnClickListener deleteClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            // the delete indicator is a direct child of the tag view
+            int position = getChildPosition((View) v.getParent());
+            if (tagItemDeleteListener != null && position >= 0) {
+                tagItemDeleteListener.onTagDeleted(TagView.this, renderedItems.get(position), position);
+            }
+        }
+    };
+
+    /**
+     * width available to tags in the last measure pass, or {@link TagLayoutEngine#UNBOUNDED} for a single line
+     */
+    private int availableWidth = TagLayoutEngine.UNBOUNDED;
+
+    /**
+     * set when the tag list changed and the tag views have to be rebuilt
+     */
+    private boolean modelDirty;
+
+    /**
+     * true while a rebuild is posted for the next frame, so mutations in the same frame share one rebuild
+     */
+    private boolean rebuildScheduled;
+
+    private final Runnable rebuildRunnable = new Runnable() {
+        @Override
+        public void run() {
+            rebuildScheduled = false;
+            // an open batch rebuilds when it ends
+            if (modelDirty && batchDepth == 0)
+                drawTags();
+        }
+    };
+
+    /**
+     * nesting depth of {@link #beginBatch()} calls, changes are applied by the outermost {@link #endBatch()}
+     */
+    private int batchDepth;
+
+    /**
+     * kind of the changes collected since the last rebuild, one of the CHANGE_ constants
+     */
+    private int pendingChange = CHANGE_NONE;
+
+    /**
+     * position of the removed tag of a {@link #CHANGE_REMOVE}, or of the first appended tag of a {@link #CHANGE_APPEND}
+     */
+    private int pendingChangePosition;
+
+    private static final int CHANGE_NONE = 0;
+
+    /**
+     * a single tag was removed from a fully rendered list
+     */
+    private static final int CHANGE_REMOVE = 1;
+
+    /**
+     * tags were appended to a fully rendered list
+     */
+    private static final int CHANGE_APPEND = 2;
+
+    /**
+     * any other change, the tag lists are diffed
+     */
+    private static final int CHANGE_ANY = 3;
+
+    /**
+     * tags from a position on were inserted, removed, moved or bound again by a diff, only
+     * used for layout: the lines before the one holding the last unchanged tag are kept
+     */
+    private static final int CHANGE_FROM = 4;
+
+    /**
+     * true while a background diff or layout for the tag list is running
+     */
+    private boolean renderPending;
+
+    /**
+     * kind of the changes the next measure pass has to lay out, {@link #CHANGE_REMOVE},
+     * {@link #CHANGE_APPEND} and {@link #CHANGE_FROM} only touch the lines from the changed tag on
+     */
+    private int pendingLayoutChange = CHANGE_ANY;
+
+    /**
+     * position of the removed tag, of the first appended tag, or of the first changed tag
+     */
+    private int pendingLayoutPosition;
+
+    /**
+     * padding the tag views were placed with, all of them are placed again once it changes
      */
-    private int tagViewWidth;
+    private int placedPaddingLeft;
+
+    private int placedPaddingTop;
+
+    /**
+     * widest tag before it was limited to the available width. Removing tags does not lower it,
+     * so it may be larger than the widest tag left
+     */
+    private int widestTagWidth;
 
     /**
-     * layout initialize flag
+     * width tags were limited to in the last measure pass, {@link Integer#MAX_VALUE} for a single line
      */
-    private boolean layoutInitialized = false;
+    private int tagWidthLimit = Integer.MAX_VALUE;
 
     /**
      * margin value between rows of tags for multiline tagView
@@ -88,6 +246,301 @@ public class TagView extends RelativeLayout {
 
     private boolean tagItemCenterVertical;
 
+    /**
+     * draw all tags on the canvas of this view instead of using a child view per tag
+     */
+    private boolean canvasRendering;
+
+    /**
+     * draws and hit-tests tags in canvas rendering mode, created on first use
+     */
+    private TagCanvasRenderer canvasRenderer;
+
+    /**
+     * tag sizes calculated without views, for canvas rendering and virtualized mode, created on first use
+     */
+    private TagMeasurer tagMeasurer;
+
+    /**
+     * only create views for the tags near the visible part of this view
+     */
+    private boolean virtualized;
+
+    /**
+     * distance in pixels around the visible part of this view in which tags get views when virtualized
+     */
+    private int prefetchMargin;
+
+    /**
+     * position of the tag shown by the first child view, always 0 unless virtualized
+     */
+    private int firstChildPosition;
+
+    /**
+     * set when the tag list changed and the child views of a virtualized view have to be bound again
+     */
+    private boolean childrenStale;
+
+    /**
+     * views removed from a virtualized view during one update, rebound before taking views from the pool
+     */
+    private final ArrayList<View> scrapViews = new ArrayList<>();
+
+    private final Rect visibleRect = new Rect();
+
+    private final ViewTreeObserver.OnScrollChangedListener scrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            if (isViewportVirtualized() && !canvasRendering && !isLayoutRequested()) {
+                updateVirtualChildren(false);
+                invalidate();
+            }
+            if (pager != null)
+                checkDataSourcePages();
+        }
+    };
+
+    /**
+     * spread creating and binding tag views over several frames
+     */
+    private boolean progressiveRendering;
+
+    /**
+     * time per frame for creating and binding tag views in progressive rendering mode
+     */
+    private long frameBudgetNanos;
+
+    /**
+     * true while only a part of the tags is rendered in progressive rendering mode
+     */
+    private boolean progressivePending;
+
+    private boolean progressiveFrameScheduled;
+
+    /**
+     * renders the next part of the tags in progressive rendering mode
+     */
+    private final Choreographer.FrameCallback progressiveFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            progressiveFrameScheduled = false;
+            // a pending rebuild renders the changed list from the start
+            if (!progressivePending || modelDirty)
+                return;
+            long start = beginRebuild();
+            try {
+                appendRenderedTags(renderedItems.size(), System.nanoTime() + frameBudgetNanos);
+            } finally {
+                endRebuild(start);
+            }
+        }
+    };
+
+    private OnRenderCompleteListener renderCompleteListener;
+
+    /**
+     * maximum number of lines in multiline mode, 0 for no limit
+     */
+    private int maxLines;
+
+    /**
+     * end the last line with a chip showing the number of tags that did not fit
+     */
+    private boolean showOverflowChip;
+
+    /**
+     * view of the overflow chip, created on first use. Kept after the views of the tags
+     */
+    private TagItemView overflowView;
+
+    /**
+     * tag item shown by the overflow chip, its text is the number of tags that did not fit
+     */
+    private TagItem overflowItem;
+
+    /**
+     * number of tags the overflow chip was bound to, or -1
+     */
+    private int overflowChipCount = -1;
+
+    private OnOverflowChipClickListener overflowChipClickListener;
+
+    private final OnClickListener overflowClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (overflowChipClickListener != null)
+                overflowChipClickListener.onOverflowChipClick(TagView.this, overflowChipCount);
+        }
+    };
+
+    /**
+     * label of a candidate overflow count, reused while the layout engine tries several of them
+     */
+    private final StringBuilder overflowLabel = new StringBuilder();
+
+    /**
+     * size of the overflow chip for the layout engine, measured like a tag
+     */
+    private final TagLayoutEngine.OverflowMeasurer overflowMeasurer = new TagLayoutEngine.OverflowMeasurer() {
+        @Override
+        public int getWidth(int overflowStart) {
+            overflowLabel.setLength(0);
+            overflowLabel.append('+').append(countOverflowTags(overflowStart));
+            return getTagMeasurer().measureWidth(getOverflowItem(), overflowLabel);
+        }
+
+        @Override
+        public int getHeight(int overflowStart) {
+            return getTagMeasurer().measureHeight(getOverflowItem());
+        }
+    };
+
+    /**
+     * tags that do not match this query are hidden, empty to show all tags
+     */
+    private String filterQuery = "";
+
+    private TagFilter tagFilter = PREFIX_FILTER;
+
+    /**
+     * matches of the filter query and the shorter queries it extends, cleared when the rendered tags change
+     */
+    private final TagFilterResults filterResults = new TagFilterResults();
+
+    /**
+     * true for each rendered tag hidden by the filter, always false after the last rendered tag
+     */
+    private boolean[] hiddenTags = new boolean[0];
+
+    private int hiddenCount;
+
+    /**
+     * case-insensitive prefix match of the tag text, the default {@link TagFilter}
+     */
+    private static final TagFilter PREFIX_FILTER = new TagFilter() {
+        @Override
+        public boolean matches(TagItem tagItem, String query) {
+            String text = tagItem.getText();
+            return text != null && text.regionMatches(true, 0, query, 0, query.length());
+        }
+    };
+
+    /**
+     * loads tags page by page from the data source while scrolling, null unless a data source is set
+     */
+    private TagPager pager;
+
+    private TagDataSource dataSource;
+
+    private int maxResidentPages = Constants.DEFAULT_MAX_RESIDENT_PAGES;
+
+    /**
+     * position of the tag kept in place on screen while pages are added or dropped, or -1
+     */
+    private int anchorPosition = -1;
+
+    /**
+     * offset of the anchor tag before the pages changed
+     */
+    private int anchorOffset;
+
+    private final Runnable pageCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (pager != null)
+                checkDataSourcePages();
+        }
+    };
+
+    /**
+     * counters and timings of this view, created and reused views are counted by {@link #viewPool}
+     */
+    private final TagViewMetrics metrics = new TagViewMetrics();
+
+    private OnMetricsListener metricsListener;
+
+    /**
+     * metrics passed to {@link #metricsListener}, filled again after each layout pass
+     */
+    private final TagViewMetrics listenerMetrics = new TagViewMetrics();
+
+    private GestureDetector gestureDetector;
+
+    /**
+     * index of the pressed tag in canvas rendering mode, {@link #PRESSED_OVERFLOW_CHIP}, or -1
+     */
+    private int pressedIndex = -1;
+
+    /**
+     * {@link #pressedIndex} while the overflow chip is pressed in canvas rendering mode
+     */
+    private static final int PRESSED_OVERFLOW_CHIP = -2;
+
+    /**
+     * space on both sides of the delete indicator
+     */
+    private int deleteIndicatorOffset;
+
+    /**
+     * extra space kept free at the end of each line, see {@link Constants#LAYOUT_WIDTH_OFFSET}
+     */
+    private int layoutWidthOffset;
+
+    /**
+     * line breaking of the child views, computed in {@link #onMeasure(int, int)} and applied in
+     * {@link #onLayout(boolean, int, int, int, int)}
+     */
+    private TagLayoutEngine layoutEngine = new TagLayoutEngine();
+
+    /**
+     * tag sizes for the layout engine, read from the measured child views
+     */
+    private final TagLayoutEngine.Measurer childMeasurer = new TagLayoutEngine.Measurer() {
+        @Override
+        public int getWidth(int index) {
+            return isTagHidden(index) ? TagLayoutEngine.GONE : getChildAt(index).getMeasuredWidth();
+        }
+
+        @Override
+        public int getHeight(int index) {
+            return getChildAt(index).getMeasuredHeight();
+        }
+    };
+
+    /**
+     * tag sizes for the layout engine measured from the tag texts once the engine reaches them,
+     * so tags after the maximum number of lines are never measured
+     */
+    private final TagLayoutEngine.Measurer lazyTextMeasurer = new TagLayoutEngine.Measurer() {
+        @Override
+        public int getWidth(int index) {
+            if (isTagHidden(index))
+                return TagLayoutEngine.GONE;
+            tagMeasurer.measure(index, renderedItems.get(index), availableWidth, textWidthCache);
+            return tagMeasurer.getWidth(index);
+        }
+
+        @Override
+        public int getHeight(int index) {
+            return tagMeasurer.getHeight(index);
+        }
+    };
+
+    /**
+     * tag sizes for the layout engine calculated from the tag texts, for canvas rendering and virtualized mode
+     */
+    private final TagLayoutEngine.Measurer textMeasurer = new TagLayoutEngine.Measurer() {
+        @Override
+        public int getWidth(int index) {
+            return isTagHidden(index) ? TagLayoutEngine.GONE : tagMeasurer.getWidth(index);
+        }
+
+        @Override
+        public int getHeight(int index) {
+            return tagMeasurer.getHeight(index);
+        }
+    };
+
 
     public TagView(Context context) {
         this(context, null, 0);
@@ -110,17 +563,8 @@ public class TagView extends RelativeLayout {
      * @param defStyle
      */
     private void initialize(Context context, AttributeSet attrs, int defStyle) {
-        mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        mViewTreeObserver = getViewTreeObserver();
-        mViewTreeObserver.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-            @Override
-            public void onGlobalLayout() {
-                if (!layoutInitialized) {
-                    layoutInitialized = true;
-                    drawTags();
-                }
-            }
-        });
+        layoutWidthOffset = Utils.dipToPx(context, Constants.LAYOUT_WIDTH_OFFSET);
+        deleteIndicatorOffset = Utils.dipToPx(context, Constants.DEFAULT_TAG_DELETE_INDICATOR_OFFSET);
 
         // get AttributeSet
         TypedArray typeArray = context.obtainStyledAttributes(attrs, R.styleable.TagView, defStyle, defStyle);
@@ -132,164 +576,1212 @@ public class TagView extends RelativeLayout {
         this.textPaddingBottom = (int) typeArray.getDimension(R.styleable.TagView_textPaddingBottom, Utils.dipToPx(this.getContext(), Constants.DEFAULT_TAG_TEXT_PADDING_BOTTOM));
         this.horizontalScrollable= typeArray.getBoolean(R.styleable.TagView_horizontalScrollable,Constants.DEFAULT_LAYOUT_HORIZONTAL_SCROLL);
         this.tagItemCenterVertical= typeArray.getBoolean(R.styleable.TagView_tagItemCenterVertical,Constants.DEFAULT_TAG_ITEM_CENTER_VERTICAL);
+        this.canvasRendering = typeArray.getBoolean(R.styleable.TagView_canvasRendering, Constants.DEFAULT_CANVAS_RENDERING);
+        this.virtualized = typeArray.getBoolean(R.styleable.TagView_virtualized, Constants.DEFAULT_VIRTUALIZED);
+        this.prefetchMargin = (int) typeArray.getDimension(R.styleable.TagView_prefetchMargin, Utils.dipToPx(this.getContext(), Constants.DEFAULT_PREFETCH_MARGIN));
+        this.progressiveRendering = typeArray.getBoolean(R.styleable.TagView_progressiveRendering, Constants.DEFAULT_PROGRESSIVE_RENDERING);
+        this.frameBudgetNanos = typeArray.getInt(R.styleable.TagView_frameBudgetMillis, Constants.DEFAULT_FRAME_BUDGET_MILLIS) * 1000000L;
+        this.maxLines = Math.max(0, typeArray.getInt(R.styleable.TagView_maxLines, Constants.DEFAULT_MAX_LINES));
+        this.showOverflowChip = typeArray.getBoolean(R.styleable.TagView_showOverflowChip, Constants.DEFAULT_SHOW_OVERFLOW_CHIP);
         typeArray.recycle();
+        setWillNotDraw(!canvasRendering);
     }
 
     @Override
-    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        super.onSizeChanged(w, h, oldw, oldh);
-        tagViewWidth = w;
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        Trace.beginSection(TagViewMetrics.TRACE_MEASURE);
+        long start = System.nanoTime();
+        try {
+            measureTags(widthMeasureSpec, heightMeasureSpec);
+        } finally {
+            metrics.measureCount++;
+            metrics.measureTimeNanos += System.nanoTime() - start;
+            Trace.endSection();
+        }
+    }
+
+    private void measureTags(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int paddingHorizontal = getPaddingLeft() + getPaddingRight();
+        boolean singleLine = horizontalScrollable || widthMode == MeasureSpec.UNSPECIFIED;
+        int maxTagWidth = Math.max(0, widthSize - paddingHorizontal);
+        availableWidth = singleLine ? TagLayoutEngine.UNBOUNDED : maxTagWidth;
+        int childHeightSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        int count = isMeasuredFromText() ? renderedItems.size() : getChildCount();
+        int layoutChange = pendingLayoutChange;
+        pendingLayoutChange = CHANGE_NONE;
+        // the sizes of tags after the last line are not known, all lines are broken again
+        boolean linesLimited = maxLines > 0 && !singleLine;
+        if (linesLimited)
+            layoutChange = CHANGE_ANY;
+        int limit = singleLine ? Integer.MAX_VALUE : maxTagWidth;
+        if (availableWidth != layoutEngine.getAvailableWidth()) {
+            // tags keep their sizes in the new width unless one of them is or was limited to the width
+            boolean sizesKept = layoutChange == CHANGE_NONE && widestTagWidth <= Math.min(limit, tagWidthLimit);
+            if (!sizesKept)
+                layoutChange = CHANGE_ANY;
+        }
+        if (layoutChange == CHANGE_NONE && count != layoutEngine.getItemCount())
+            layoutChange = CHANGE_ANY;
+        tagWidthLimit = limit;
+        // after removing, appending or changing tags, or changing the width, the sizes of all other tags are still known
+        int firstUnmeasured = layoutChange == CHANGE_REMOVE || layoutChange == CHANGE_NONE ? Integer.MAX_VALUE
+                : layoutChange == CHANGE_APPEND || layoutChange == CHANGE_FROM ? pendingLayoutPosition : 0;
+        if (firstUnmeasured == 0)
+            widestTagWidth = 0;
+
+        TagLayoutEngine.Measurer measurer;
+        if (isMeasuredFromText()) {
+            // sizes are calculated from the tag texts, views are measured in onLayout
+            TagMeasurer tagMeasurer = getTagMeasurer();
+            tagMeasurer.setTextPaddings(textPaddingLeft, textPaddingTop, textPaddingRight, textPaddingBottom, deleteIndicatorOffset);
+            if (linesLimited) {
+                tagMeasurer.ensureCapacity(count);
+                measurer = lazyTextMeasurer;
+            } else {
+                if (firstUnmeasured < count)
+                    widestTagWidth = Math.max(widestTagWidth, tagMeasurer.measure(renderedItems, firstUnmeasured, availableWidth, textWidthCache));
+                measurer = textMeasurer;
+            }
+        } else {
+            // tag widths come from cached text widths, so a child whose width did not change hits its measure cache
+            for (int i = firstUnmeasured; i < count; i++) {
+                // hidden tags take no space, their views are measured once they are shown again
+                if (isTagHidden(i))
+                    continue;
+                View child = getChildAt(i);
+                int tagWidth = measureTagWidth(child, renderedItems.get(i));
+                widestTagWidth = Math.max(widestTagWidth, tagWidth);
+                // a tag never gets more than the available width in multiline mode, its text is ellipsized instead
+                if (!singleLine)
+                    tagWidth = Math.min(tagWidth, maxTagWidth);
+                child.measure(MeasureSpec.makeMeasureSpec(tagWidth, MeasureSpec.EXACTLY), childHeightSpec);
+            }
+            measurer = childMeasurer;
+        }
+
+        layoutEngine.setItemMargin(tagItemMargin);
+        layoutEngine.setLineMargin(lineMargin);
+        layoutEngine.setWidthOffset(layoutWidthOffset);
+        layoutEngine.setCenterVertical(tagItemCenterVertical);
+        layoutEngine.setMaxLines(linesLimited ? maxLines : 0, showOverflowChip ? overflowMeasurer : null);
+        if (layoutChange == CHANGE_REMOVE)
+            layoutEngine.reflow(measurer, count, availableWidth, pendingLayoutPosition, 1);
+        else if (layoutChange == CHANGE_APPEND)
+            layoutEngine.append(measurer, count, availableWidth);
+        else if (layoutChange == CHANGE_FROM)
+            layoutEngine.layoutFrom(measurer, count, availableWidth, pendingLayoutPosition);
+        else if (layoutChange == CHANGE_NONE)
+            // children are only placed again if the lines break differently
+            layoutEngine.resize(availableWidth);
+        else
+            layoutEngine.layout(measurer, count, availableWidth);
+
+        int width = resolveSize(layoutEngine.getContentWidth() + paddingHorizontal, widthMeasureSpec);
+        int height = resolveSize(layoutEngine.getContentHeight() + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        setMeasuredDimension(Math.max(width, getSuggestedMinimumWidth()), Math.max(height, getSuggestedMinimumHeight()));
+    }
+
+    /**
+     * calculate the width of a bound tag view from its text widths and paddings
+     *
+     * @param tagLayout tag view bound to the tag item
+     * @param tagItem   tag item shown by the view
+     * @return width in pixels
+     */
+    private int measureTagWidth(View tagLayout, TagItem tagItem) {
+        TextView tagView = ((TagItemView) tagLayout).getTextView();
+        int width = tagLayout.getPaddingLeft() + tagLayout.getPaddingRight()
+                + textPaddingLeft + textPaddingRight
+                + tagView.getCompoundPaddingLeft() + tagView.getCompoundPaddingRight()
+                + (int) Math.ceil(textWidthCache.measureText(tagView.getPaint(), tagItem.getText(), metrics));
+        if (tagItem.isDeletable()) {
+            TextView deletableView = ((TagItemView) tagLayout).getDeleteView();
+            width += deletableView.getCompoundPaddingLeft() + deletableView.getCompoundPaddingRight()
+                    + (int) Math.ceil(textWidthCache.measureText(deletableView.getPaint(), tagItem.getDeleteIndicator(), metrics));
+        }
+        return width;
     }
 
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        int width = getMeasuredWidth();
-        if (width <= 0)
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        Trace.beginSection(TagViewMetrics.TRACE_LAYOUT);
+        long start = System.nanoTime();
+        try {
+            layoutTags();
+        } finally {
+            metrics.layoutCount++;
+            metrics.layoutTimeNanos += System.nanoTime() - start;
+            Trace.endSection();
+        }
+        if (metricsListener != null)
+            metricsListener.onMetrics(this, copyMetrics(listenerMetrics));
+    }
+
+    private void layoutTags() {
+        if (anchorPosition >= 0 && !modelDirty && !renderPending)
+            restoreScrollAnchor();
+        if (pager != null) {
+            // checked once the layout is complete, the visible part of this view may have changed
+            removeCallbacks(pageCheckRunnable);
+            post(pageCheckRunnable);
+        }
+        if (canvasRendering) {
+            // the chip is drawn with the tags
+            bindOverflowItem();
             return;
-        tagViewWidth = getMeasuredWidth();
+        }
+        if (isMeasuredFromText()) {
+            updateVirtualChildren(true);
+            layoutOverflowChip();
+            return;
+        }
+        int[] lefts = layoutEngine.getLefts();
+        int[] tops = layoutEngine.getTops();
+        int paddingLeft = getPaddingLeft();
+        int paddingTop = getPaddingTop();
+        // views of tags whose offsets did not change in the last measure pass stay where they are,
+        // unless the padding moved the origin of the content
+        int start = layoutEngine.getChangedStart();
+        int count = Math.min(getTagChildCount(), layoutEngine.getChangedEnd());
+        if (paddingLeft != placedPaddingLeft || paddingTop != placedPaddingTop) {
+            start = 0;
+            count = getTagChildCount();
+            placedPaddingLeft = paddingLeft;
+            placedPaddingTop = paddingTop;
+        }
+        for (int i = start; i < count; i++) {
+            View child = getChildAt(i);
+            int left = paddingLeft + lefts[i];
+            int top = paddingTop + tops[i];
+            child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+        }
+    }
+
+    /**
+     * create views for the tags near the visible part of this view, or of its single line if it is
+     * horizontally scrollable, or for all tags within the maximum number of lines if not
+     * virtualized, and recycle all others
+     *
+     * @param relayout true to measure and place the views that are kept as well
+     */
+    private void updateVirtualChildren(boolean relayout) {
+        // tags after the maximum number of lines never get views
+        int count = Math.min(renderedItems.size(), layoutEngine.getOverflowStart());
+        int start = 0;
+        int end = count;
+        if (horizontalScrollable) {
+            // before the first layout or while hidden, the first screen is assumed to be visible
+            if (!getLocalVisibleRect(visibleRect))
+                visibleRect.set(0, 0, getResources().getDisplayMetrics().widthPixels, getHeight());
+            start = findSingleLineTag(visibleRect.left - prefetchMargin - getPaddingLeft(), count);
+            // the tag reaching over the right edge of the range is part of it as well
+            end = Math.min(findSingleLineTag(visibleRect.right + prefetchMargin - getPaddingLeft(), count) + 1, count);
+        } else if (virtualized) {
+            // before the first layout or while hidden, the first screen is assumed to be visible
+            if (!getLocalVisibleRect(visibleRect))
+                visibleRect.set(0, 0, getWidth(), getResources().getDisplayMetrics().heightPixels);
+            int firstLine = layoutEngine.findLine(visibleRect.top - prefetchMargin - getPaddingTop());
+            int lastLine = layoutEngine.findLine(visibleRect.bottom + prefetchMargin - getPaddingTop());
+            start = firstLine < layoutEngine.getLineCount() ? layoutEngine.getLineStarts()[firstLine] : count;
+            end = lastLine < layoutEngine.getLineCount() ? layoutEngine.getLineEnd(lastLine) : count;
+            end = Math.min(end, count);
+        }
+
+        int oldStart = firstChildPosition;
+        int oldEnd = oldStart + getTagChildCount();
+        if (!childrenStale && !relayout && start == oldStart && end == oldEnd)
+            return;
+
+        if (childrenStale || end <= oldStart || start >= oldEnd) {
+            // nothing to keep, all views are bound again
+            moveChildrenToScrap(0, getTagChildCount());
+            oldStart = start;
+            oldEnd = start;
+            childrenStale = false;
+        } else {
+            // drop views at the end first, so that child indices at the front stay valid
+            if (end < oldEnd) {
+                moveChildrenToScrap(end - oldStart, oldEnd - end);
+                oldEnd = end;
+            }
+            if (start > oldStart) {
+                moveChildrenToScrap(0, start - oldStart);
+                oldStart = start;
+            }
+        }
+
+        if (relayout) {
+            for (int i = 0; i < getTagChildCount(); i++)
+                layoutVirtualChild(getChildAt(i), oldStart + i);
+        }
+        for (int position = oldStart - 1; position >= start; position--)
+            addVirtualChild(position, 0);
+        for (int position = oldEnd; position < end; position++)
+            addVirtualChild(position, getTagChildCount());
+        firstChildPosition = start;
+
+        for (int i = 0; i < scrapViews.size(); i++)
+            viewPool.release(scrapViews.get(i));
+        scrapViews.clear();
+    }
+
+    /**
+     * find the first tag of the single line that ends after an offset, tags of a single line are
+     * ordered by offset and hidden tags have no width
+     *
+     * @param x     offset from the left of the content area
+     * @param count number of tags
+     * @return position of the tag, or count if all tags end before the offset
+     */
+    private int findSingleLineTag(int x, int count) {
+        int[] lefts = layoutEngine.getLefts();
+        int[] widths = layoutEngine.getWidths();
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lefts[middle] + widths[middle] <= x)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return number of child views showing tags, the overflow chip follows them
+     */
+    private int getTagChildCount() {
+        int count = getChildCount();
+        return overflowView != null && overflowView.getParent() == this ? count - 1 : count;
+    }
+
+    /**
+     * show the overflow chip at the place calculated by the layout engine, or remove it if all tags fit
+     */
+    private void layoutOverflowChip() {
+        if (!TagCanvasRenderer.hasOverflowChip(layoutEngine)) {
+            if (overflowView != null && overflowView.getParent() == this)
+                removeViewInLayout(overflowView);
+            return;
+        }
+        if (overflowView == null) {
+            overflowView = new TagItemView(getContext());
+            overflowView.setLayoutParams(generateDefaultLayoutParams());
+            overflowView.setOnClickListener(overflowClickListener);
+            bindTagView(overflowView, getOverflowItem());
+        }
+        if (bindOverflowItem())
+            bindTagView(overflowView, overflowItem);
+        if (overflowView.getParent() != this)
+            addViewInLayout(overflowView, -1, overflowView.getLayoutParams(), true);
+        int width = layoutEngine.getOverflowWidth();
+        int height = layoutEngine.getOverflowHeight();
+        overflowView.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        int left = getPaddingLeft() + layoutEngine.getOverflowLeft();
+        int top = getPaddingTop() + layoutEngine.getOverflowTop();
+        overflowView.layout(left, top, left + width, top + height);
+    }
+
+    /**
+     * set the text of the overflow chip to the number of tags that did not fit in the last measure pass
+     *
+     * @return true if the text changed
+     */
+    private boolean bindOverflowItem() {
+        if (!TagCanvasRenderer.hasOverflowChip(layoutEngine))
+            return false;
+        int count = countOverflowTags(layoutEngine.getOverflowStart());
+        if (count == overflowChipCount)
+            return false;
+        overflowChipCount = count;
+        getOverflowItem().setText(getOverflowText(count));
+        return true;
+    }
+
+    private TagItem getOverflowItem() {
+        if (overflowItem == null)
+            overflowItem = new TagItem(getContext(), getOverflowText(0));
+        return overflowItem;
+    }
+
+    private static String getOverflowText(int count) {
+        return "+" + count;
+    }
+
+    /**
+     * @param overflowStart index of the first tag that did not fit
+     * @return number of tags that did not fit, not counting tags hidden by the filter
+     */
+    private int countOverflowTags(int overflowStart) {
+        int count = renderedItems.size();
+        int overflowCount = count - overflowStart;
+        if (hiddenCount > 0) {
+            for (int i = overflowStart; i < count; i++) {
+                if (isTagHidden(i))
+                    overflowCount--;
+            }
+        }
+        return overflowCount;
+    }
+
+    private void moveChildrenToScrap(int start, int count) {
+        for (int i = start; i < start + count; i++)
+            scrapViews.add(getChildAt(i));
+        removeViewsInLayout(start, count);
+    }
+
+    /**
+     * bind a view to a tag of a virtualized view and add it at the given child index
+     */
+    private void addVirtualChild(int position, int index) {
+        View tagLayout;
+        if (!scrapViews.isEmpty()) {
+            viewPool.countReuse();
+            tagLayout = scrapViews.remove(scrapViews.size() - 1);
+        } else {
+            tagLayout = viewPool.obtain();
+            if (tagLayout == null) {
+                tagLayout = createTagView();
+                // tag sizes have to be calculated with the typeface the text views use
+                TextView tagView = ((TagItemView) tagLayout).getTextView();
+                if (getTagMeasurer().setTypeface(tagView.getTypeface())) {
+                    pendingLayoutChange = CHANGE_ANY;
+                    requestLayout();
+                }
+            }
+        }
+        bindTagView(tagLayout, renderedItems.get(position));
+        if (isTagHidden(position))
+            tagLayout.setVisibility(GONE);
+        addViewInLayout(tagLayout, index, tagLayout.getLayoutParams(), true);
+        layoutVirtualChild(tagLayout, position);
+    }
+
+    /**
+     * measure and place a view of a virtualized view with the size and position calculated for its tag
+     */
+    private void layoutVirtualChild(View child, int position) {
+        int width = tagMeasurer.getWidth(position);
+        int height = tagMeasurer.getHeight(position);
+        child.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        int left = getPaddingLeft() + layoutEngine.getLefts()[position];
+        int top = getPaddingTop() + layoutEngine.getTops()[position];
+        child.layout(left, top, left + width, top + height);
+    }
+
+    /**
+     * @param child child view of this view
+     * @return position of the tag shown by the view, or -1 if it is not a child
+     */
+    private int getChildPosition(View child) {
+        int index = indexOfChild(child);
+        return index < 0 ? -1 : firstChildPosition + index;
+    }
+
+    /**
+     * load the next or previous page of the data source if the visible part of this view is
+     * within the prefetch margin of the end or the start of the tags
+     */
+    private void checkDataSourcePages() {
+        // sizes are only known once the loaded pages are laid out
+        if (pager.isLoading() || modelDirty || renderPending || isLayoutRequested())
+            return;
+        if (!getLocalVisibleRect(visibleRect))
+            return;
+        int start = horizontalScrollable ? visibleRect.left : visibleRect.top;
+        int end = horizontalScrollable ? visibleRect.right : visibleRect.bottom;
+        int size = horizontalScrollable ? getWidth() : getHeight();
+        if (end + prefetchMargin >= size)
+            pager.loadNext();
+        else if (start - prefetchMargin <= 0)
+            pager.loadPrevious();
+    }
+
+    /**
+     * insert a page loaded from the data source and drop the tags of a page that is no longer resident
+     *
+     * @param tagItems  tags of the page
+     * @param atEnd     true to append the page, false to insert it in front of the tags
+     * @param dropCount number of tags to drop at the other end
+     */
+    void applyPage(List<TagItem> tagItems, boolean atEnd, int dropCount) {
+        int count = tagItems != null ? tagItems.size() : 0;
+        int size = tagItemList.size();
+        // the tags that stay move by the number of tags dropped or inserted in front of them
+        int shift = atEnd ? -dropCount : count;
+        if (shift != 0)
+            saveScrollAnchor(shift);
+        if (atEnd && dropCount == 0) {
+            if (count > 0) {
+                tagItemList.addAll(tagItems);
+                markAppended(size);
+            }
+            return;
+        }
+        if (atEnd) {
+            tagItemList.subList(0, dropCount).clear();
+            if (count > 0)
+                tagItemList.addAll(tagItems);
+        } else {
+            tagItemList.subList(size - dropCount, size).clear();
+            if (count > 0)
+                tagItemList.addAll(0, tagItems);
+        }
+        markModelDirty();
+    }
+
+    /**
+     * remember the first visible tag, so that it stays in place when the tags in front of it change
+     *
+     * @param shift change of the position of the tag
+     */
+    private void saveScrollAnchor(int shift) {
+        anchorPosition = -1;
+        int count = layoutEngine.getItemCount();
+        if (modelDirty || renderPending || count == 0 || !getLocalVisibleRect(visibleRect))
+            return;
+        int position;
+        if (horizontalScrollable) {
+            // first tag reaching into the visible part
+            position = Math.min(findSingleLineTag(visibleRect.left - getPaddingLeft(), count), count - 1);
+            anchorOffset = layoutEngine.getLefts()[position];
+        } else {
+            int line = Math.min(layoutEngine.findLine(visibleRect.top - getPaddingTop()), layoutEngine.getLineCount() - 1);
+            position = layoutEngine.getLineStarts()[line];
+            anchorOffset = layoutEngine.getLineTops()[line];
+        }
+        if (position + shift >= 0)
+            anchorPosition = position + shift;
+    }
+
+    /**
+     * scroll the nearest scrolling parent so that the anchor tag is where it was before the pages changed
+     */
+    private void restoreScrollAnchor() {
+        int position = anchorPosition;
+        anchorPosition = -1;
+        if (position >= layoutEngine.getItemCount())
+            return;
+        final int delta = horizontalScrollable ? layoutEngine.getLefts()[position] - anchorOffset
+                : layoutEngine.getLineTops()[layoutEngine.getItemLines()[position]] - anchorOffset;
+        if (delta == 0)
+            return;
+        // scrolled once the parents are laid out with the new size of this view
+        post(new Runnable() {
+            @Override
+            public void run() {
+                ViewParent parent = getParent();
+                while (parent instanceof View) {
+                    View view = (View) parent;
+                    if (horizontalScrollable && (view.canScrollHorizontally(1) || view.canScrollHorizontally(-1))) {
+                        view.scrollBy(delta, 0);
+                        return;
+                    }
+                    if (!horizontalScrollable && (view.canScrollVertically(1) || view.canScrollVertically(-1))) {
+                        view.scrollBy(0, delta);
+                        return;
+                    }
+                    parent = view.getParent();
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        drawTags();
+        if (canvasRendering) {
+            TagCanvasRenderer renderer = getCanvasRenderer();
+            renderer.draw(canvas, renderedItems, layoutEngine, getPaddingLeft(), getPaddingTop(), pressedIndex);
+            if (overflowItem != null)
+                renderer.drawOverflowChip(canvas, overflowItem, layoutEngine, getPaddingLeft(), getPaddingTop(), pressedIndex == PRESSED_OVERFLOW_CHIP);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!canvasRendering)
+            return super.onTouchEvent(event);
+        if (gestureDetector == null)
+            gestureDetector = new GestureDetector(getContext(), canvasGestureListener);
+        boolean handled = gestureDetector.onTouchEvent(event);
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+            setPressedIndex(-1);
+        return handled;
+    }
+
+    private TagCanvasRenderer getCanvasRenderer() {
+        if (canvasRenderer == null)
+            canvasRenderer = new TagCanvasRenderer(getResources().getDisplayMetrics(), getTagMeasurer());
+        return canvasRenderer;
     }
 
     /**
-     * draw all the tags
+     * @return layout of the last measure pass
      */
-    private void drawTags() {
+    TagLayoutEngine getLayoutEngine() {
+        return layoutEngine;
+    }
+
+    private TagMeasurer getTagMeasurer() {
+        if (tagMeasurer == null) {
+            tagMeasurer = new TagMeasurer(getResources().getDisplayMetrics());
+            tagMeasurer.setMetrics(metrics);
+        }
+        return tagMeasurer;
+    }
 
-        if (!layoutInitialized)
+    /**
+     * find the tag drawn at a touch position in canvas rendering mode
+     *
+     * @return index of the tag, {@link #PRESSED_OVERFLOW_CHIP} for the overflow chip, or -1
+     */
+    private int hitTest(MotionEvent event) {
+        int x = (int) event.getX() - getPaddingLeft();
+        int y = (int) event.getY() - getPaddingTop();
+        TagCanvasRenderer renderer = getCanvasRenderer();
+        if (renderer.isOverflowChipHit(layoutEngine, x, y))
+            return PRESSED_OVERFLOW_CHIP;
+        return renderer.hitTest(layoutEngine, x, y);
+    }
+
+    private void setPressedIndex(int index) {
+        if (pressedIndex == index)
             return;
+        pressedIndex = index;
+        invalidate();
+    }
 
-        // clear all previous tags, if present any
-        removeAllViews();
+    /**
+     * resolves clicks, long clicks and delete taps on tags drawn in canvas rendering mode
+     */
+    private final GestureDetector.SimpleOnGestureListener canvasGestureListener = new GestureDetector.SimpleOnGestureListener() {
+        @Override
+        public boolean onDown(MotionEvent e) {
+            int index = hitTest(e);
+            setPressedIndex(index);
+            return index != -1;
+        }
+
+        @Override
+        public boolean onSingleTapUp(MotionEvent e) {
+            int position = hitTest(e);
+            if (position == PRESSED_OVERFLOW_CHIP) {
+                playSoundEffect(SoundEffectConstants.CLICK);
+                overflowClickListener.onClick(TagView.this);
+                return true;
+            }
+            if (position < 0)
+                return false;
+            playSoundEffect(SoundEffectConstants.CLICK);
+            TagItem tagItem = renderedItems.get(position);
+            if (tagItem.isDeletable() && getCanvasRenderer().isDeleteHit(layoutEngine, position, (int) e.getX() - getPaddingLeft())) {
+                if (tagItemDeleteListener != null)
+                    tagItemDeleteListener.onTagDeleted(TagView.this, tagItem, position);
+            } else if (tagItemClickListener != null) {
+                tagItemClickListener.onTagClick(tagItem, position);
+            }
+            return true;
+        }
+
+        @Override
+        public void onLongPress(MotionEvent e) {
+            int position = hitTest(e);
+            if (position >= 0 && tagItemLongClickListener != null) {
+                performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+                tagItemLongClickListener.onTagLongClick(renderedItems.get(position), position);
+            }
+            setPressedIndex(-1);
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            setPressedIndex(-1);
+            return false;
+        }
+    };
+
+    /**
+     * apply a changed style of all tags, like the text paddings. The tag list did not change, so
+     * a rebuild would find nothing to do; the views are bound again and all tags measured again
+     */
+    private void invalidateTagStyle() {
+        if (isMeasuredFromText()) {
+            // the tag measurer notices the new paddings, views are bound in the layout pass
+            childrenStale = true;
+        } else {
+            for (int i = 0; i < getTagChildCount(); i++) {
+                View child = getChildAt(i);
+                bindTagView(child, renderedItems.get(i));
+                if (isTagHidden(i))
+                    child.setVisibility(GONE);
+            }
+        }
+        if (overflowView != null)
+            bindTagView(overflowView, getOverflowItem());
+        pendingLayoutChange = CHANGE_ANY;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * mark the tag list as changed, tag views are rebuilt on the next frame or when the open batch ends
+     */
+    private void markModelDirty() {
+        pendingChange = CHANGE_ANY;
+        modelDirty = true;
+        if (batchDepth == 0)
+            scheduleRebuild();
+    }
+
+    /**
+     * mark tags as appended, if nothing else changed since the last rebuild only views for them are created
+     *
+     * @param position position of the first appended tag
+     */
+    private void markAppended(int position) {
+        if (!modelDirty && !renderPending) {
+            pendingChange = CHANGE_APPEND;
+            pendingChangePosition = position;
+            modelDirty = true;
+            if (batchDepth == 0)
+                scheduleRebuild();
+        } else if (pendingChange != CHANGE_APPEND) {
+            markModelDirty();
+        }
+    }
 
-        // layout padding left & layout padding right
-        float total = getPaddingLeft() + getPaddingRight();
+    /**
+     * mark a single tag as removed, if nothing else changed since the last rebuild only its view is dropped
+     *
+     * @param position position of the removed tag
+     */
+    private void markRemoved(int position) {
+        if (!modelDirty && !renderPending) {
+            pendingChange = CHANGE_REMOVE;
+            pendingChangePosition = position;
+            modelDirty = true;
+            if (batchDepth == 0)
+                scheduleRebuild();
+        } else {
+            markModelDirty();
+        }
+    }
 
-        // List Index
-        int listIndex = 1;
+    /**
+     * post at most one rebuild per frame, no matter how many times the state was marked dirty
+     */
+    private void scheduleRebuild() {
+        // a detached view schedules its pending rebuild once attached
+        if (rebuildScheduled || !isAttachedToWindow())
+            return;
+        rebuildScheduled = true;
+        postOnAnimation(rebuildRunnable);
+    }
 
-        // for multiline we need anchor object form above line to correctly place
-        int anchorTagId = 1;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnScrollChangedListener(scrollChangedListener);
+        if (rebuildScheduled) {
+            removeCallbacks(rebuildRunnable);
+            rebuildScheduled = false;
+        }
+        if (progressiveFrameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(progressiveFrameCallback);
+            progressiveFrameScheduled = false;
+        }
+    }
 
-        // The header tag of this line
-        int firstTagInLineId = 1;
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(scrollChangedListener);
+        if (modelDirty)
+            scheduleRebuild();
+        else if (progressivePending)
+            scheduleProgressiveFrame();
+    }
 
-        // previous tag holder
-        TagItem tagItemPre = null;
+    /**
+     * draw all the tags, only the views of inserted, removed, moved or changed tag items are touched
+     */
+    private void drawTags() {
+        long start = beginRebuild();
+        try {
+            renderTags();
+        } finally {
+            endRebuild(start);
+        }
+    }
 
-        // loop through tags list and add one by one to view
-        for (TagItem item : tagItemList) {
-            final int position = listIndex - 1;
-            final TagItem tagItem = item;
+    private long beginRebuild() {
+        Trace.beginSection(TagViewMetrics.TRACE_REBUILD);
+        return System.nanoTime();
+    }
 
-            // inflate tagItem layout
-            View tagLayout = mInflater.inflate(R.layout.tagview_item, null);
-            // set id of the tagItem
-            tagLayout.setId(listIndex);
+    private void endRebuild(long start) {
+        metrics.rebuildCount++;
+        metrics.rebuildTimeNanos += System.nanoTime() - start;
+        Trace.endSection();
+    }
 
-            tagLayout.setBackground(getSelector(tagItem));
+    private void renderTags() {
+        modelDirty = false;
+        renderPending = false;
+        progressivePending = false;
+        int change = pendingChange;
+        pendingChange = CHANGE_NONE;
+        if (change == CHANGE_REMOVE) {
+            removeRenderedTag(pendingChangePosition);
+            dispatchRenderComplete();
+            return;
+        }
+        if (change == CHANGE_APPEND) {
+            appendRenderedTags(pendingChangePosition, getFrameDeadline());
+            return;
+        }
 
-            // tagItem text
-            TextView tagView = tagLayout.findViewById(R.id.tv_tag_item_contain);
-            tagView.setText(tagItem.getText());
-            LinearLayout.LayoutParams params = (LinearLayout.LayoutParams) tagView.getLayoutParams();
-            params.setMargins(textPaddingLeft, textPaddingTop, textPaddingRight, textPaddingBottom);
-            tagView.setLayoutParams(params);
-            tagView.setTextColor(tagItem.getTagTextColor());
-            tagView.setTextSize(TypedValue.COMPLEX_UNIT_SP, tagItem.getTagTextSize());
+        metrics.fullRebuildCount++;
+        final int generation = ++renderGeneration;
+        final List<TagItem> newItems = new ArrayList<>(tagItemList);
+
+        if (isMeasuredFromText()) {
+            // tags are drawn from the list directly, or get views in the next layout pass
+            renderedItems = newItems;
+            pressedIndex = -1;
+            childrenStale = true;
+            pendingLayoutChange = CHANGE_ANY;
+            refilterRenderedTags();
+            requestLayout();
+            invalidate();
+            dispatchRenderComplete();
+            return;
+        }
 
-            tagLayout.setOnClickListener(new OnClickListener() {
+        if (newItems.size() >= asyncDiffThreshold) {
+            // long lists are diffed off the main thread against a snapshot of the rendered state
+            final List<TagItem> oldItems = new ArrayList<>(renderedItems);
+            final int[] oldModCounts = renderedModCounts.clone();
+            renderPending = true;
+            metrics.backgroundPassCount++;
+            TagExecutors.background().execute(new Runnable() {
                 @Override
-                public void onClick(View v) {
-                    if (tagItemClickListener != null) {
-                        tagItemClickListener.onTagClick(tagItem, position);
-                    }
+                public void run() {
+                    final TagListDiff diff = TagListDiff.calculate(oldItems, oldModCounts, newItems);
+                    TagExecutors.main().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation != renderGeneration)
+                                return;
+                            long start = beginRebuild();
+                            try {
+                                applyDiff(diff, newItems, getFrameDeadline());
+                            } finally {
+                                endRebuild(start);
+                            }
+                        }
+                    });
                 }
             });
+            return;
+        }
+        applyDiff(TagListDiff.calculate(renderedItems, renderedModCounts, newItems), newItems, getFrameDeadline());
+    }
 
-            tagLayout.setOnLongClickListener(new OnLongClickListener() {
-                @Override
-                public boolean onLongClick(View v) {
-                    if (tagItemLongClickListener != null) {
-                        tagItemLongClickListener.onTagLongClick(tagItem, position);
-                    }
-                    return true;
+    /**
+     * @return time from which creating and binding tag views continues in the next frame,
+     * only limited in progressive rendering mode
+     */
+    private long getFrameDeadline() {
+        return progressiveRendering ? System.nanoTime() + frameBudgetNanos : Long.MAX_VALUE;
+    }
+
+    /**
+     * bring the child views in line with a new tag item list
+     *
+     * @param diff     difference between {@link #renderedItems} and the new list
+     * @param newItems new tag item list
+     * @param deadline {@link System#nanoTime()} after which the remaining tags are rendered in the next frames
+     */
+    private void applyDiff(TagListDiff diff, List<TagItem> newItems, long deadline) {
+        int newCount = newItems.size();
+        int[] modCounts = new int[newCount];
+        for (int i = 0; i < newCount; i++)
+            modCounts[i] = newItems.get(i).getModCount();
+
+        if (diff.isEmpty()) {
+            renderedItems = newItems;
+            renderedModCounts = modCounts;
+            finishRenderPass(false);
+            return;
+        }
+
+        int oldCount = getChildCount();
+        View[] oldChildren = new View[oldCount];
+        for (int i = 0; i < oldCount; i++)
+            oldChildren[i] = getChildAt(i);
+
+        // kept views are attached again in their new order, removed ones are bound to inserted tags
+        // first and the rest goes back to the pool, so replacing a list does not depend on the pool size
+        detachAllViewsFromParent();
+        for (int i = 0; i < oldCount; i++) {
+            if (diff.oldToNew[i] < 0)
+                removeDetachedView(oldChildren[i], false);
+        }
+        // old position of the next removed view to bind again
+        int nextRemoved = 0;
+
+        // number of tags bound before the deadline, the following ones are appended in the next frames
+        int renderedCount = newCount;
+        for (int i = 0; i < newCount; i++) {
+            int oldPosition = diff.newToOld[i];
+            if ((oldPosition < 0 || diff.changed[i]) && i > 0 && System.nanoTime() > deadline) {
+                renderedCount = i;
+                break;
+            }
+            View tagLayout;
+            if (oldPosition >= 0) {
+                tagLayout = oldChildren[oldPosition];
+                if (diff.changed[i]) {
+                    viewPool.countReuse();
+                    bindTagView(tagLayout, newItems.get(i));
                 }
-            });
+                attachViewToParent(tagLayout, i, tagLayout.getLayoutParams());
+            } else {
+                // inserted tags take removed views or views from the pool, creating them only when there are none
+                while (nextRemoved < oldCount && diff.oldToNew[nextRemoved] >= 0)
+                    nextRemoved++;
+                if (nextRemoved < oldCount) {
+                    tagLayout = oldChildren[nextRemoved++];
+                    viewPool.countReuse();
+                } else {
+                    tagLayout = obtainTagView();
+                }
+                bindTagView(tagLayout, newItems.get(i));
+                addViewInLayout(tagLayout, i, tagLayout.getLayoutParams(), true);
+            }
+        }
 
-            // calculate　of tagItem layout width including the left and right padding
-            float tagWidth = tagView.getPaint().measureText(tagItem.getText()) + textPaddingLeft + textPaddingRight;
+        for (int i = nextRemoved; i < oldCount; i++) {
+            if (diff.oldToNew[i] < 0)
+                viewPool.release(oldChildren[i]);
+        }
+        if (renderedCount < newCount) {
+            // kept views of tags that were not reached yet are bound again once their turn comes
+            for (int i = 0; i < oldCount; i++) {
+                if (diff.oldToNew[i] >= renderedCount) {
+                    removeDetachedView(oldChildren[i], false);
+                    viewPool.release(oldChildren[i]);
+                }
+            }
+            newItems = new ArrayList<>(newItems.subList(0, renderedCount));
+        }
+        renderedItems = newItems;
+        renderedModCounts = modCounts;
+        // tags before the first changed one keep their views and sizes
+        setPendingLayoutChange(CHANGE_FROM, Math.min(diff.firstChangedPosition, renderedCount));
+        refilterRenderedTags();
+        requestLayout();
+        invalidate();
+        finishRenderPass(renderedCount < newCount);
+    }
 
-            // deletable text view config, if deletable set true
-            TextView deletableView = tagLayout.findViewById(R.id.tv_tag_item_delete);
-            if (tagItem.isDeletable()) {
-                deletableView.setVisibility(View.VISIBLE);
-                deletableView.setText(tagItem.getDeleteIndicator());
-                // offset between text and the delete button
-                int offset = Utils.dipToPx(getContext(), 2f);
-                deletableView.setPadding(offset, textPaddingTop, textPaddingRight + offset, textPaddingBottom);
+    /**
+     * drop a single removed tag from the rendered state. Only its view is detached, the next
+     * measure pass reflows the lines from the one that contained it
+     *
+     * @param position position of the removed tag
+     */
+    private void removeRenderedTag(int position) {
+        renderGeneration++;
+        renderedItems.remove(position);
+        if (position < renderedModCounts.length)
+            System.arraycopy(renderedModCounts, position + 1, renderedModCounts, position, renderedModCounts.length - position - 1);
+        if (position < hiddenTags.length) {
+            setTagHidden(position, false);
+            System.arraycopy(hiddenTags, position + 1, hiddenTags, position, hiddenTags.length - position - 1);
+            hiddenTags[hiddenTags.length - 1] = false;
+        }
+        // kept filter results refer to the old positions
+        filterResults.clear();
+
+        if (isMeasuredFromText()) {
+            if (tagMeasurer != null)
+                tagMeasurer.remove(position);
+            pressedIndex = -1;
+            int index = position - firstChildPosition;
+            if (index < 0) {
+                firstChildPosition--;
+            } else if (index < getTagChildCount()) {
+                View child = getChildAt(index);
+                removeViewInLayout(child);
+                viewPool.release(child);
+            }
+        } else {
+            View child = getChildAt(position);
+            removeViewInLayout(child);
+            viewPool.release(child);
+        }
 
-                // set the color of delete indicator
-                deletableView.setTextColor(tagItem.getDeleteIndicatorColor());
-                deletableView.setTextSize(TypedValue.COMPLEX_UNIT_SP, tagItem.getDeleteIndicatorSize());
+        // a layout requested for anything else needs a full pass
+        setPendingLayoutChange(CHANGE_REMOVE, position);
+        requestLayout();
+        invalidate();
+    }
 
-                // attach delete listener to the deletable view
-                deletableView.setOnClickListener(new OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        if (tagItemDeleteListener != null) {
-                            tagItemDeleteListener.onTagDeleted(TagView.this, tagItem, position);
-                        }
-                    }
-                });
+    /**
+     * bind views for tags appended to the rendered state, the views of the tags before are not touched
+     *
+     * @param position position of the first appended tag
+     * @param deadline {@link System#nanoTime()} after which the remaining tags are rendered in the next frames
+     */
+    private void appendRenderedTags(int position, long deadline) {
+        renderGeneration++;
+        int count = tagItemList.size();
+        if (renderedModCounts.length < count)
+            renderedModCounts = Arrays.copyOf(renderedModCounts, Math.max(count, renderedModCounts.length * 3 / 2));
+        int end = count;
+        for (int i = position; i < count; i++) {
+            if (i > position && !isMeasuredFromText() && System.nanoTime() > deadline) {
+                end = i;
+                break;
+            }
+            TagItem tagItem = tagItemList.get(i);
+            renderedItems.add(tagItem);
+            renderedModCounts[i] = tagItem.getModCount();
+            // only the appended tags are tested against the filter
+            boolean hidden = !filterQuery.isEmpty() && !tagFilter.matches(tagItem, filterQuery);
+            setTagHidden(i, hidden);
+            // views of a virtualized view are created in the next layout pass if the tag is visible
+            if (!isMeasuredFromText()) {
+                View tagLayout = obtainTagView();
+                bindTagView(tagLayout, tagItem);
+                if (hidden)
+                    tagLayout.setVisibility(GONE);
+                addViewInLayout(tagLayout, -1, tagLayout.getLayoutParams(), true);
+            }
+        }
+        if (!filterQuery.isEmpty())
+            filterResults.clear();
+        setPendingLayoutChange(CHANGE_APPEND, position);
+        requestLayout();
+        invalidate();
+        finishRenderPass(end < count);
+    }
+
+    /**
+     * continue rendering in the next frame if tags are left, or report that all tags are rendered
+     *
+     * @param incomplete true if the deadline stopped the pass before all tags were rendered
+     */
+    private void finishRenderPass(boolean incomplete) {
+        // mutations until the rest is rendered are diffed against the rendered part
+        renderPending = incomplete;
+        progressivePending = incomplete;
+        if (incomplete)
+            scheduleProgressiveFrame();
+        else
+            dispatchRenderComplete();
+    }
+
+    private void scheduleProgressiveFrame() {
+        if (progressiveFrameScheduled || !isAttachedToWindow())
+            return;
+        progressiveFrameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(progressiveFrameCallback);
+    }
+
+    private void dispatchRenderComplete() {
+        if (renderCompleteListener != null)
+            renderCompleteListener.onRenderComplete(this);
+    }
+
+    /**
+     * @return true if the rendered tag at the position is hidden by the filter
+     */
+    private boolean isTagHidden(int position) {
+        return hiddenCount > 0 && position < hiddenTags.length && hiddenTags[position];
+    }
+
+    private void setTagHidden(int position, boolean hidden) {
+        if (position >= hiddenTags.length) {
+            if (!hidden)
+                return;
+            hiddenTags = Arrays.copyOf(hiddenTags, Math.max(position + 1, hiddenTags.length * 3 / 2));
+        }
+        if (hiddenTags[position] != hidden) {
+            hiddenTags[position] = hidden;
+            hiddenCount += hidden ? 1 : -1;
+        }
+    }
+
+    /**
+     * test all rendered tags against the filter again after they were replaced
+     */
+    private void refilterRenderedTags() {
+        filterResults.clear();
+        applyFilter(true);
+    }
+
+    /**
+     * hide the rendered tags that do not match the filter query and show all others. Only the
+     * views of tags whose state changed are touched, the next measure pass reflows all lines.
+     *
+     * @param rebound true if the views were bound again, so the state of all of them is set
+     */
+    private void applyFilter(boolean rebound) {
+        if (filterQuery.isEmpty() && hiddenCount == 0) {
+            filterResults.clear();
+            return;
+        }
+        int count = renderedItems.size();
+        int[] matches = filterResults.find(renderedItems, filterQuery, tagFilter);
+        boolean changed = false;
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            boolean hidden = matches != null && (next >= matches.length || matches[next] != i);
+            if (matches != null && !hidden)
+                next++;
+            if (isTagHidden(i) != hidden) {
+                setTagHidden(i, hidden);
+                changed = true;
+            } else if (!rebound) {
+                continue;
+            }
+            if (!canvasRendering) {
+                int index = i - firstChildPosition;
+                if (index >= 0 && index < getTagChildCount())
+                    getChildAt(index).setVisibility(hidden ? GONE : VISIBLE);
+            }
+        }
+        if (count < hiddenTags.length)
+            Arrays.fill(hiddenTags, count, hiddenTags.length, false);
+        if (changed) {
+            pressedIndex = -1;
+            pendingLayoutChange = CHANGE_ANY;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * record what the next measure pass has to lay out again, changes that cannot be combined need a full pass
+     */
+    private void setPendingLayoutChange(int change, int position) {
+        if (!isLayoutRequested()) {
+            pendingLayoutChange = change;
+            pendingLayoutPosition = position;
+        } else if (pendingLayoutChange == CHANGE_ANY || pendingLayoutChange == CHANGE_NONE || change == CHANGE_ANY) {
+            pendingLayoutChange = CHANGE_ANY;
+        } else {
+            // changes of the same frame are laid out together from the first changed tag, appends stay appends
+            if (pendingLayoutChange != CHANGE_APPEND || change != CHANGE_APPEND)
+                pendingLayoutChange = CHANGE_FROM;
+            pendingLayoutPosition = Math.min(pendingLayoutPosition, position);
+        }
+    }
+
+    /**
+     * @return true if tag sizes are calculated from their texts and views are only created in
+     * layout passes, for canvas rendering, virtualized mode and a maximum number of lines
+     */
+    private boolean isMeasuredFromText() {
+        return canvasRendering || isViewportVirtualized() || maxLines > 0;
+    }
+
+    /**
+     * @return true if only tags near the visible part of this view get views. A horizontally
+     * scrollable view is always virtualized, its single line can be much wider than the screen
+     */
+    private boolean isViewportVirtualized() {
+        return virtualized || horizontalScrollable;
+    }
 
-                // add the width of deletable view to the tagItem width including padding
-                tagWidth += deletableView.getPaint().measureText(tagItem.getDeleteIndicator()) + textPaddingLeft + textPaddingRight;
-            }
+    /**
+     * @return a recycled tag view, or a new one if the pool is empty
+     */
+    private View obtainTagView() {
+        View tagLayout = viewPool.obtain();
+        if (tagLayout == null)
+            tagLayout = createTagView();
+        return tagLayout;
+    }
 
-            // params for adding tagItem to the tagItem view
-            LayoutParams tagParams = new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    /**
+     * create a tag view with the shared listeners, which stay set while the view is rebound
+     */
+    private View createTagView() {
+        long start = System.nanoTime();
+        TagItemView tagLayout = new TagItemView(getContext());
+        tagLayout.setLayoutParams(generateDefaultLayoutParams());
+        tagLayout.setOnClickListener(tagClickListener);
+        tagLayout.setOnLongClickListener(tagLongClickListener);
+        // only clickable while the delete indicator is shown
+        tagLayout.getDeleteView().setOnClickListener(deleteClickListener);
+        metrics.inflateTimeNanos += System.nanoTime() - start;
+        return tagLayout;
+    }
 
-            //add margin of each line
-            tagParams.bottomMargin = lineMargin;
+    /**
+     * bind a tag item to a new or recycled tag item view
+     *
+     * @param tagLayout {@link TagItemView} of this view
+     * @param tagItem   tag item to show
+     */
+    private void bindTagView(View tagLayout, TagItem tagItem) {
+        long start = System.nanoTime();
+        // a recycled view may have been hidden by the filter
+        tagLayout.setVisibility(VISIBLE);
+        // styles are interned, a view bound to the same style keeps its background
+        TagStyle style = tagItem.getStyle();
+        if (tagLayout.getTag() != style) {
+            tagLayout.setBackground(getSelector(tagItem));
+            tagLayout.setTag(style);
+        }
 
-            //need to add in new line in tagItem view
-            if (!horizontalScrollable && tagViewWidth <= total + tagWidth + Utils.dipToPx(this.getContext(), Constants.LAYOUT_WIDTH_OFFSET)) {
+        // tagItem text, only what differs from the previous binding is set
+        TextView tagView = ((TagItemView) tagLayout).getTextView();
+        if (!TextUtils.equals(tagView.getText(), tagItem.getText()))
+            tagView.setText(tagItem.getText());
+        LinearLayout.LayoutParams params = (LinearLayout.LayoutParams) tagView.getLayoutParams();
+        if (params.leftMargin != textPaddingLeft || params.topMargin != textPaddingTop
+                || params.rightMargin != textPaddingRight || params.bottomMargin != textPaddingBottom) {
+            params.setMargins(textPaddingLeft, textPaddingTop, textPaddingRight, textPaddingBottom);
+            tagView.setLayoutParams(params);
+        }
+        if (tagView.getCurrentTextColor() != tagItem.getTagTextColor())
+            tagView.setTextColor(tagItem.getTagTextColor());
+        tagView.setTextSize(TypedValue.COMPLEX_UNIT_SP, tagItem.getTagTextSize());
+
+        // deletable text view config, if deletable set true
+        TextView deletableView = ((TagItemView) tagLayout).getDeleteView();
+        if (!tagItem.isDeletable()) {
+            deletableView.setVisibility(View.GONE);
+        } else {
+            deletableView.setVisibility(View.VISIBLE);
+            if (!TextUtils.equals(deletableView.getText(), tagItem.getDeleteIndicator()))
+                deletableView.setText(tagItem.getDeleteIndicator());
+            // offset between text and the delete button
+            deletableView.setPadding(deleteIndicatorOffset, textPaddingTop, textPaddingRight + deleteIndicatorOffset, textPaddingBottom);
 
-                // check if there is already a line, add a below rule.
-                if (tagItemPre != null)
-                    tagParams.addRule(RelativeLayout.BELOW, anchorTagId);
-                // initialize total param (layout padding left & layout padding right)
-                total = getPaddingLeft() + getPaddingRight();
-                anchorTagId = listIndex;
-                firstTagInLineId = listIndex;
-            }
-            //no need to new line
-            else {
-                tagParams.addRule(RelativeLayout.ALIGN_TOP, firstTagInLineId);
-                if(tagItemCenterVertical)
-                tagParams.addRule(RelativeLayout.CENTER_VERTICAL);
-                //not header of the line
-                if (listIndex != firstTagInLineId) {
-                    tagParams.addRule(RelativeLayout.RIGHT_OF, listIndex - 1);
-                    tagParams.leftMargin = tagItemMargin;
-                    total += tagItemMargin;
-                    // if we have a new tagItem whose height is greater than last greatest tagItem set that tagItem as anchor
-                    if (tagItemPre.getTagTextSize() < tagItem.getTagTextSize()) {
-                        anchorTagId = listIndex;
-                    }
-                }
-            }
-            total += tagWidth;
-            addView(tagLayout, tagParams);
-            tagItemPre = tagItem;
-            listIndex++;
+            // set the color of delete indicator
+            if (deletableView.getCurrentTextColor() != tagItem.getDeleteIndicatorColor())
+                deletableView.setTextColor(tagItem.getDeleteIndicatorColor());
+            deletableView.setTextSize(TypedValue.COMPLEX_UNIT_SP, tagItem.getDeleteIndicatorSize());
         }
+        metrics.bindTimeNanos += System.nanoTime() - start;
     }
 
     /**
@@ -301,30 +1793,137 @@ public class TagView extends RelativeLayout {
         if (tagItem.getBackground() != null)
             return tagItem.getBackground();
 
-        StateListDrawable states = new StateListDrawable();
-        GradientDrawable gdNormal = new GradientDrawable();
-        gdNormal.setColor(tagItem.getLayoutColor());
-        gdNormal.setCornerRadius(tagItem.getBorderRadius());
-        if (tagItem.getLayoutBorderSize() > 0) {
-            gdNormal.setStroke(Utils.dipToPx(getContext(), tagItem.getLayoutBorderSize()), tagItem.getLayoutBorderColor());
-        }
-        GradientDrawable gdPress = new GradientDrawable();
-        gdPress.setColor(tagItem.getLayoutColorPress());
-        gdPress.setCornerRadius(tagItem.getBorderRadius());
-        states.addState(new int[]{android.R.attr.state_pressed}, gdPress);
-        //must add state_pressed first，or state_pressed will not take effect
-        states.addState(new int[]{}, gdNormal);
-        return states;
+        return TagDrawableCache.getSharedInstance().obtain(tagItem, getResources().getDisplayMetrics().density);
     }
 
     /**
-     * add single tag item to tag view
+     * add single tag item to tag view. Only the new tag is measured and placed on the last
+     * line or a new one, the views of the other tags are not touched.
      * @param tagItem tag item with all properties set.
      */
     public void add(TagItem tagItem) {
 
         tagItemList.add(tagItem);
-        drawTags();
+        markAppended(tagItemList.size() - 1);
+    }
+
+    /**
+     * replace all tag items like {@link #add(List)}, but measure the tag texts on a background
+     * thread. The result is applied on the main thread in one step; until then the previous tags
+     * stay visible. The result is dropped if the tags were changed again in the meantime.
+     * <p>
+     * Lines are still broken in the next measure pass on the main thread, which depends on the
+     * filter, the maximum number of lines and the width at that time. Views that measure tags from
+     * text take over the measured sizes, so that pass measures no text. Tag views of the default
+     * mode read the text widths from the shared cache instead, and the background thread also
+     * diffs the new list against the rendered one; the main thread just binds the changed views.
+     *
+     * @param tagItems list of all tags to show
+     */
+    public void addAsync(List<TagItem> tagItems) {
+        if (tagItems == null) return;
+        tagItemList = new ArrayList<>(tagItems);
+        // the background result replaces the rebuild and the progressive rendering that may be pending,
+        // the next frame must not append tags of the new list to the rendered part of the old one
+        modelDirty = false;
+        pendingChange = CHANGE_ANY;
+        if (rebuildScheduled) {
+            removeCallbacks(rebuildRunnable);
+            rebuildScheduled = false;
+        }
+        progressivePending = false;
+        if (progressiveFrameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(progressiveFrameCallback);
+            progressiveFrameScheduled = false;
+        }
+
+        final int generation = ++renderGeneration;
+        renderPending = true;
+        metrics.backgroundPassCount++;
+        final List<TagItem> items = new ArrayList<>(tagItems);
+        final Typeface typeface = getTagTypeface();
+        final int paddingLeft = textPaddingLeft;
+        final int paddingTop = textPaddingTop;
+        final int paddingRight = textPaddingRight;
+        final int paddingBottom = textPaddingBottom;
+        final int deleteOffset = deleteIndicatorOffset;
+        final int width = availableWidth;
+        final DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        final TextWidthCache cache = textWidthCache;
+        // tag views are diffed against a snapshot of the rendered state, like a background diff of drawTags
+        final boolean measuredFromText = isMeasuredFromText();
+        final List<TagItem> oldItems = measuredFromText ? null : new ArrayList<>(renderedItems);
+        final int[] oldModCounts = measuredFromText ? null : renderedModCounts.clone();
+
+        TagExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != renderGeneration)
+                    return;
+                // measuring also fills the shared text width cache, which tag views read when they are measured
+                final TagMeasurer measurer = new TagMeasurer(displayMetrics);
+                measurer.setTypeface(typeface);
+                measurer.setTextPaddings(paddingLeft, paddingTop, paddingRight, paddingBottom, deleteOffset);
+                measurer.measure(items, width, cache);
+                final TagListDiff diff = measuredFromText ? null : TagListDiff.calculate(oldItems, oldModCounts, items);
+                TagExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == renderGeneration)
+                            applyPrecomputed(items, measurer, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * apply tags measured, and diffed, on a background thread
+     *
+     * @param measurer measurer holding the sizes of the items
+     * @param diff     diff against the rendered tags, only if the view had tag views when they were added
+     */
+    private void applyPrecomputed(List<TagItem> items, TagMeasurer measurer, TagListDiff diff) {
+        if (isMeasuredFromText() && diff == null) {
+            // the next measure pass breaks the lines from the precomputed sizes, the views of a
+            // virtualized view are bound in the layout pass after it
+            tagMeasurer = measurer;
+            tagMeasurer.setMetrics(metrics);
+            canvasRenderer = null;
+            renderedItems = items;
+            renderPending = false;
+            pressedIndex = -1;
+            childrenStale = true;
+            pendingLayoutChange = CHANGE_ANY;
+            refilterRenderedTags();
+            requestLayout();
+            invalidate();
+            dispatchRenderComplete();
+        } else if (!isMeasuredFromText() && diff != null) {
+            // the text widths of the tag views are cached now, binding the changed ones is all that is left
+            long start = beginRebuild();
+            try {
+                pendingChange = CHANGE_NONE;
+                metrics.fullRebuildCount++;
+                applyDiff(diff, items, getFrameDeadline());
+            } finally {
+                endRebuild(start);
+            }
+        } else {
+            // the mode changed in the meantime
+            drawTags();
+        }
+    }
+
+    /**
+     * @return typeface of the tag texts, taken from a tag view once one was created
+     */
+    private Typeface getTagTypeface() {
+        if (getChildCount() > 0) {
+            TextView tagView = ((TagItemView) getChildAt(0)).getTextView();
+            return tagView.getTypeface();
+        }
+        return tagMeasurer != null ? tagMeasurer.getTextPaint().getTypeface() : null;
     }
 
     /**
@@ -333,11 +1932,8 @@ public class TagView extends RelativeLayout {
      */
     public void add(List<TagItem> tagItems) {
         if (tagItems == null) return;
-        tagItemList = new ArrayList<>();
-        if (tagItems.isEmpty())
-            drawTags();
-        tagItemList.addAll(tagItems);
-        drawTags();
+        tagItemList = new ArrayList<>(tagItems);
+        markModelDirty();
     }
 
 
@@ -347,11 +1943,12 @@ public class TagView extends RelativeLayout {
      */
     public void add(String[] tags) {
         if (tags == null) return;
+        int position = tagItemList.size();
         for (String item : tags) {
             TagItem tagItem = new TagItem(getContext(),item);
             tagItemList.add(tagItem);
         }
-        drawTags();
+        markAppended(position);
     }
 
 
@@ -364,14 +1961,80 @@ public class TagView extends RelativeLayout {
     }
 
     /**
-     * remove single tag with position of the tag in the list
+     * remove single tag with position of the tag in the list. Only the view of the tag is
+     * detached, tags are reflowed from its line until the lines break like before.
      * @param tagItemPosition position of tag to be removed
      */
     public void remove(int tagItemPosition) {
         if (tagItemPosition < tagItemList.size()) {
             tagItemList.remove(tagItemPosition);
-            drawTags();
+            markRemoved(tagItemPosition);
+        }
+    }
+
+    /**
+     * insert single tag item at a position
+     * @param position position of the new tag item
+     * @param tagItem  tag item with all properties set.
+     */
+    public void add(int position, TagItem tagItem) {
+        tagItemList.add(position, tagItem);
+        markModelDirty();
+    }
+
+    /**
+     * replace the tag item at a position, only its view is bound again
+     * @param position position of the tag item to replace
+     * @param tagItem  new tag item
+     */
+    public void set(int position, TagItem tagItem) {
+        tagItemList.set(position, tagItem);
+        markModelDirty();
+    }
+
+    /**
+     * move a tag item to another position
+     * @param fromPosition current position of the tag item
+     * @param toPosition   new position of the tag item
+     */
+    public void move(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition)
+            return;
+        tagItemList.add(toPosition, tagItemList.remove(fromPosition));
+        markModelDirty();
+    }
+
+    /**
+     * start collecting changes. Tags added, removed, moved or replaced until the matching
+     * {@link #endBatch()} are applied together in a single rebuild and layout pass.
+     * Batches can be nested, changes are applied when the outermost batch ends.
+     * <pre>
+     * tagView.beginBatch();
+     * try {
+     *     for (TagItem tagItem : tagItems)
+     *         tagView.add(tagItem);
+     * } finally {
+     *     tagView.endBatch();
+     * }
+     * </pre>
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * end a batch started with {@link #beginBatch()}, the outermost batch applies all collected changes
+     */
+    public void endBatch() {
+        if (batchDepth == 0)
+            throw new IllegalStateException("endBatch() called without beginBatch()");
+        if (--batchDepth > 0 || !modelDirty)
+            return;
+        if (rebuildScheduled) {
+            removeCallbacks(rebuildRunnable);
+            rebuildScheduled = false;
         }
+        drawTags();
     }
 
     /**
@@ -379,7 +2042,211 @@ public class TagView extends RelativeLayout {
      */
     public void removeAll() {
         tagItemList.clear();
+        clearRenderedTags();
+        markModelDirty();
+    }
+
+    /**
+     * drop all child views and the rendered state, the next rebuild starts from scratch
+     */
+    private void clearRenderedTags() {
+        // the overflow chip is not a tag view and is not recycled
+        for (int i = 0; i < getTagChildCount(); i++)
+            viewPool.release(getChildAt(i));
         removeAllViews();
+        renderedItems = new ArrayList<>();
+        renderedModCounts = new int[0];
+        hiddenTags = new boolean[0];
+        hiddenCount = 0;
+        filterResults.clear();
+        pressedIndex = -1;
+        firstChildPosition = 0;
+        pendingLayoutChange = CHANGE_ANY;
+    }
+
+    public String getFilter() {
+        return filterQuery;
+    }
+
+    /**
+     * hide the tags that do not match a query, e.g. text typed into a search field. Tags are
+     * only hidden and the lines reflowed, no view is created or removed. When the query extends
+     * the previous one only the tags that matched it are tested again; when it goes back to an
+     * earlier query, e.g. after deleting a character, the kept result of that query is used.
+     * Positions reported to the listeners stay positions in {@link #getTagItemList()}.
+     *
+     * @param query filter query, null or empty to show all tags
+     */
+    public void setFilter(CharSequence query) {
+        String filterQuery = query != null ? query.toString() : "";
+        if (filterQuery.equals(this.filterQuery))
+            return;
+        this.filterQuery = filterQuery;
+        applyFilter(false);
+    }
+
+    public TagFilter getTagFilter() {
+        return tagFilter;
+    }
+
+    /**
+     * set how tags are matched against the filter query, by default a case-insensitive prefix match of the tag text
+     *
+     * @param tagFilter filter, null for the default one
+     */
+    public void setTagFilter(TagFilter tagFilter) {
+        this.tagFilter = tagFilter != null ? tagFilter : PREFIX_FILTER;
+        filterResults.clear();
+        applyFilter(false);
+    }
+
+    public TagDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * load tags from a data source instead of adding them, replacing all current tags.
+     * The first page is loaded right away, further pages when the visible part of this view
+     * gets within {@link #getPrefetchMargin()} of the end of the tags, to the bottom, or to the
+     * right when {@link #isHorizontalScrollable()}. At most {@link #getMaxResidentPages()} pages
+     * are kept; dropped pages are loaded again when scrolling back. While a data source is set,
+     * the tag list should not be changed by other means.
+     *
+     * @param dataSource source of tags, null to stop loading and keep the current tags
+     */
+    public void setDataSource(TagDataSource dataSource) {
+        if (pager != null) {
+            pager.release();
+            pager = null;
+        }
+        this.dataSource = dataSource;
+        anchorPosition = -1;
+        if (dataSource == null)
+            return;
+        removeAll();
+        pager = new TagPager(this, dataSource, maxResidentPages);
+        pager.loadNext();
+    }
+
+    /**
+     * abandon the page load in progress, e.g. when the data source did not answer in time.
+     * A result delivered for it later is dropped, the page is requested again when it is needed.
+     */
+    public void cancelPageLoad() {
+        if (pager != null)
+            pager.cancel();
+    }
+
+    public int getMaxResidentPages() {
+        return maxResidentPages;
+    }
+
+    /**
+     * set the maximum number of pages of the data source kept in memory
+     *
+     * @param maxResidentPages number of pages, at least 2
+     */
+    public void setMaxResidentPages(int maxResidentPages) {
+        this.maxResidentPages = Math.max(2, maxResidentPages);
+        if (pager != null)
+            pager.setMaxResidentPages(this.maxResidentPages);
+    }
+
+    /**
+     * maximum number of detached tag item views kept for reuse
+     *
+     * @return pool size
+     */
+    public int getRecyclePoolSize() {
+        return viewPool.getMaxSize();
+    }
+
+    /**
+     * set the maximum number of detached tag item views kept for reuse, 0 disables recycling
+     *
+     * @param recyclePoolSize pool size
+     */
+    public void setRecyclePoolSize(int recyclePoolSize) {
+        viewPool.setMaxSize(Math.max(0, recyclePoolSize));
+    }
+
+    /**
+     * @return number of tag item views that were rebound instead of created
+     */
+    public int getRecycleHitCount() {
+        return viewPool.getHitCount();
+    }
+
+    /**
+     * @return number of tag item views that had to be created
+     */
+    public int getRecycleMissCount() {
+        return viewPool.getMissCount();
+    }
+
+    /**
+     * @return snapshot of the counters and timings since this view was created or since {@link #resetMetrics()}
+     */
+    public TagViewMetrics getMetrics() {
+        return copyMetrics(new TagViewMetrics());
+    }
+
+    /**
+     * fill an instance with the current counters and timings
+     *
+     * @return the filled instance
+     */
+    private TagViewMetrics copyMetrics(TagViewMetrics target) {
+        target.set(metrics);
+        target.inflateCount = viewPool.getMissCount();
+        target.reuseCount = viewPool.getHitCount();
+        target.droppedViewCount = viewPool.getDropCount();
+        return target;
+    }
+
+    /**
+     * start counting from zero, including {@link #getRecycleHitCount()} and {@link #getRecycleMissCount()}
+     */
+    public void resetMetrics() {
+        metrics.reset();
+        viewPool.resetCounts();
+    }
+
+    /**
+     * set a listener that gets the metrics after each layout pass. The same instance is filled
+     * again for every call, {@link #getMetrics()} returns a snapshot to keep
+     *
+     * @param metricsListener listener, null to stop reporting
+     */
+    public void setOnMetricsListener(OnMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public TextWidthCache getTextWidthCache() {
+        return textWidthCache;
+    }
+
+    /**
+     * set the cache used for tag text widths, by default all tag views share {@link TextWidthCache#getSharedInstance()}
+     *
+     * @param textWidthCache cache of text widths
+     */
+    public void setTextWidthCache(TextWidthCache textWidthCache) {
+        this.textWidthCache = textWidthCache;
+        requestLayout();
+    }
+
+    public int getAsyncDiffThreshold() {
+        return asyncDiffThreshold;
+    }
+
+    /**
+     * set the list size from which changes of the tag list are calculated on a background thread
+     *
+     * @param asyncDiffThreshold minimum number of tags, {@link Integer#MAX_VALUE} to always diff on the main thread
+     */
+    public void setAsyncDiffThreshold(int asyncDiffThreshold) {
+        this.asyncDiffThreshold = asyncDiffThreshold;
     }
 
     public int getLineMargin() {
@@ -388,6 +2255,7 @@ public class TagView extends RelativeLayout {
 
     public void setLineMargin(float lineMargin) {
         this.lineMargin = Utils.dipToPx(getContext(), lineMargin);
+        requestLayout();
     }
 
     public int getTagItemMargin() {
@@ -396,6 +2264,7 @@ public class TagView extends RelativeLayout {
 
     public void setTagItemMargin(float tagItemMargin) {
         this.tagItemMargin = Utils.dipToPx(getContext(), tagItemMargin);
+        requestLayout();
     }
 
     public int getTextPaddingLeft() {
@@ -404,6 +2273,7 @@ public class TagView extends RelativeLayout {
 
     public void setTextPaddingLeft(float textPaddingLeft) {
         this.textPaddingLeft = Utils.dipToPx(getContext(), textPaddingLeft);
+        invalidateTagStyle();
     }
 
     public int getTextPaddingRight() {
@@ -412,6 +2282,7 @@ public class TagView extends RelativeLayout {
 
     public void setTextPaddingRight(float textPaddingRight) {
         this.textPaddingRight = Utils.dipToPx(getContext(), textPaddingRight);
+        invalidateTagStyle();
     }
 
     public int getTextPaddingTop() {
@@ -420,6 +2291,7 @@ public class TagView extends RelativeLayout {
 
     public void setTextPaddingTop(float textPaddingTop) {
         this.textPaddingTop = Utils.dipToPx(getContext(), textPaddingTop);
+        invalidateTagStyle();
     }
 
     public int getTextPaddingBottom() {
@@ -428,14 +2300,31 @@ public class TagView extends RelativeLayout {
 
     public void setTextPaddingBottom(int textPaddingBottom) {
         this.textPaddingBottom = textPaddingBottom;
+        invalidateTagStyle();
     }
 
     public boolean isHorizontalScrollable() {
         return horizontalScrollable;
     }
 
+    /**
+     * keep all tags in a single line, e.g. inside a HorizontalScrollView. Offsets are calculated
+     * from the tag texts and only tags close to the visible part of the line get views, which are
+     * recycled while scrolling, see {@link #setPrefetchMargin(float)}.
+     *
+     * @param horizontalScrollable true for a single line
+     */
     public void setHorizontalScrollable(boolean horizontalScrollable) {
+        if (this.horizontalScrollable == horizontalScrollable)
+            return;
+        boolean measuredFromText = isMeasuredFromText();
         this.horizontalScrollable = horizontalScrollable;
+        if (measuredFromText != isMeasuredFromText()) {
+            clearRenderedTags();
+            markModelDirty();
+        }
+        pendingLayoutChange = CHANGE_ANY;
+        requestLayout();
     }
 
     /**
@@ -465,8 +2354,152 @@ public class TagView extends RelativeLayout {
         this.tagItemDeleteListener = tagItemDeleteListener;
     }
 
+    public boolean isCanvasRendering() {
+        return canvasRendering;
+    }
+
+    /**
+     * draw all tags on the canvas of this view instead of creating a child view per tag.
+     * Uses much less memory for large read-only clouds; clicks, long clicks and deletes are
+     * resolved from the tag positions and reported to the same listeners.
+     *
+     * @param canvasRendering true to draw tags on the canvas
+     */
+    public void setCanvasRendering(boolean canvasRendering) {
+        if (this.canvasRendering == canvasRendering)
+            return;
+        this.canvasRendering = canvasRendering;
+        setWillNotDraw(!canvasRendering);
+        clearRenderedTags();
+        markModelDirty();
+        requestLayout();
+    }
+
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    /**
+     * only create views for the tags close to the visible part of this view, e.g. inside a scroll view.
+     * Positions of all tags are calculated from their text widths, views are created and recycled
+     * while scrolling. Ignored in canvas rendering mode, which creates no views at all.
+     *
+     * @param virtualized true to create views for visible tags only
+     */
+    public void setVirtualized(boolean virtualized) {
+        if (this.virtualized == virtualized)
+            return;
+        this.virtualized = virtualized;
+        clearRenderedTags();
+        markModelDirty();
+        requestLayout();
+    }
+
+    public int getPrefetchMargin() {
+        return prefetchMargin;
+    }
+
+    /**
+     * set the distance around the visible part of a virtualized view in which tags get views before they become visible
+     *
+     * @param prefetchMargin distance in dp
+     */
+    public void setPrefetchMargin(float prefetchMargin) {
+        this.prefetchMargin = Utils.dipToPx(getContext(), prefetchMargin);
+        requestLayout();
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    /**
+     * limit the number of lines in multiline mode. Tags that do not fit get no views and are
+     * only measured once they fit again; the last line ends with a chip showing their number,
+     * see {@link #setShowOverflowChip(boolean)}. Like in virtualized mode, tag sizes are
+     * calculated from the tag texts and views are created in layout passes.
+     *
+     * @param maxLines maximum number of lines, 0 for no limit
+     */
+    public void setMaxLines(int maxLines) {
+        maxLines = Math.max(0, maxLines);
+        if (this.maxLines == maxLines)
+            return;
+        boolean measuredFromText = isMeasuredFromText();
+        this.maxLines = maxLines;
+        if (measuredFromText != isMeasuredFromText()) {
+            clearRenderedTags();
+            markModelDirty();
+        }
+        pendingLayoutChange = CHANGE_ANY;
+        requestLayout();
+    }
+
+    public boolean isShowOverflowChip() {
+        return showOverflowChip;
+    }
+
+    /**
+     * show a chip like "+12" at the end of the last line when not all tags fit into {@link #getMaxLines()}
+     *
+     * @param showOverflowChip true to show the chip
+     */
+    public void setShowOverflowChip(boolean showOverflowChip) {
+        this.showOverflowChip = showOverflowChip;
+        pendingLayoutChange = CHANGE_ANY;
+        requestLayout();
+    }
+
+    /**
+     * setter for OnOverflowChipClickListener
+     *
+     * @param overflowChipClickListener
+     */
+    public void setOnOverflowChipClickListener(OnOverflowChipClickListener overflowChipClickListener) {
+        this.overflowChipClickListener = overflowChipClickListener;
+    }
+
+    public boolean isProgressiveRendering() {
+        return progressiveRendering;
+    }
+
+    /**
+     * create and bind tag views within a time budget per frame, continuing in the next frames
+     * until all tags are shown. Lines are filled from the top, so the first visible lines are
+     * rendered first. {@link OnRenderCompleteListener} is called once all tags are rendered.
+     * Has no effect in canvas rendering and virtualized mode, which create few or no views.
+     *
+     * @param progressiveRendering true to spread rendering over several frames
+     */
+    public void setProgressiveRendering(boolean progressiveRendering) {
+        this.progressiveRendering = progressiveRendering;
+    }
+
+    public int getFrameBudgetMillis() {
+        return (int) (frameBudgetNanos / 1000000L);
+    }
+
+    /**
+     * set the time per frame for creating and binding tag views in progressive rendering mode
+     *
+     * @param frameBudgetMillis time in milliseconds, at least one tag is rendered per frame
+     */
+    public void setFrameBudgetMillis(int frameBudgetMillis) {
+        this.frameBudgetNanos = Math.max(0, frameBudgetMillis) * 1000000L;
+    }
+
+    /**
+     * setter for OnRenderCompleteListener
+     *
+     * @param renderCompleteListener
+     */
+    public void setOnRenderCompleteListener(OnRenderCompleteListener renderCompleteListener) {
+        this.renderCompleteListener = renderCompleteListener;
+    }
+
     public void setTagItemCenterVertical(boolean tagItemCenterVertical) {
         this.tagItemCenterVertical = tagItemCenterVertical;
+        requestLayout();
     }
 
     /**
@@ -483,4 +2516,38 @@ public class TagView extends RelativeLayout {
     public interface OnTagItemLongClickListener {
         void onTagLongClick(TagItem tagItem, int position);
     }
+
+    /**
+     * decides which tags are shown while a filter query is set, see {@link #setFilter(CharSequence)}
+     */
+    public interface TagFilter {
+
+        /**
+         * @param tagItem tag to test
+         * @param query   non-empty filter query
+         * @return true to show the tag. A query extending another one must not match a tag the shorter one did not match
+         */
+        boolean matches(TagItem tagItem, String query);
+    }
+
+    /**
+     * called when the overflow chip is clicked, e.g. to show all tags with {@link #setMaxLines(int) setMaxLines(0)}
+     */
+    public interface OnOverflowChipClickListener {
+        void onOverflowChipClick(TagView view, int overflowCount);
+    }
+
+    /**
+     * receives the metrics of a tag view after each layout pass
+     */
+    public interface OnMetricsListener {
+        void onMetrics(TagView view, TagViewMetrics metrics);
+    }
+
+    /**
+     * called once all tags of a change are rendered, in progressive rendering mode possibly several frames later
+     */
+    public interface OnRenderCompleteListener {
+        void onRenderComplete(TagView view);
+    }
 }
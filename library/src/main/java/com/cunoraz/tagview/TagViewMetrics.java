@@ -0,0 +1,212 @@
+package com.cunoraz.tagview;
+
+/**
+ * Counters and timings of a {@link TagView} since it was created or since
+ * {@link TagView#resetMetrics()}. Instances returned by {@link TagView#getMetrics()} are snapshots
+ * and do not change; the instance passed to a {@link TagView.OnMetricsListener} is reused for every call.
+ * The same phases are traced as sections named {@link #TRACE_MEASURE}, {@link #TRACE_LAYOUT}
+ * and {@link #TRACE_REBUILD}, so they show up in system traces.
+ */
+public class TagViewMetrics {
+
+    public static final String TRACE_MEASURE = "TagView.measure";
+
+    public static final String TRACE_LAYOUT = "TagView.layout";
+
+    public static final String TRACE_REBUILD = "TagView.rebuild";
+
+    int measureCount;
+
+    long measureTimeNanos;
+
+    int layoutCount;
+
+    long layoutTimeNanos;
+
+    int rebuildCount;
+
+    long rebuildTimeNanos;
+
+    int inflateCount;
+
+    long inflateTimeNanos;
+
+    int reuseCount;
+
+    long bindTimeNanos;
+
+    int droppedViewCount;
+
+    int textWidthCacheHitCount;
+
+    int textWidthCacheMissCount;
+
+    int fullRebuildCount;
+
+    int backgroundPassCount;
+
+    TagViewMetrics() {
+    }
+
+    /**
+     * copy all values of another instance
+     */
+    void set(TagViewMetrics other) {
+        measureCount = other.measureCount;
+        measureTimeNanos = other.measureTimeNanos;
+        layoutCount = other.layoutCount;
+        layoutTimeNanos = other.layoutTimeNanos;
+        rebuildCount = other.rebuildCount;
+        rebuildTimeNanos = other.rebuildTimeNanos;
+        inflateCount = other.inflateCount;
+        inflateTimeNanos = other.inflateTimeNanos;
+        reuseCount = other.reuseCount;
+        bindTimeNanos = other.bindTimeNanos;
+        droppedViewCount = other.droppedViewCount;
+        textWidthCacheHitCount = other.textWidthCacheHitCount;
+        textWidthCacheMissCount = other.textWidthCacheMissCount;
+        fullRebuildCount = other.fullRebuildCount;
+        backgroundPassCount = other.backgroundPassCount;
+    }
+
+    void reset() {
+        measureCount = 0;
+        measureTimeNanos = 0;
+        layoutCount = 0;
+        layoutTimeNanos = 0;
+        rebuildCount = 0;
+        rebuildTimeNanos = 0;
+        inflateCount = 0;
+        inflateTimeNanos = 0;
+        reuseCount = 0;
+        bindTimeNanos = 0;
+        droppedViewCount = 0;
+        textWidthCacheHitCount = 0;
+        textWidthCacheMissCount = 0;
+        fullRebuildCount = 0;
+        backgroundPassCount = 0;
+    }
+
+    /**
+     * @return number of measure passes
+     */
+    public int getMeasureCount() {
+        return measureCount;
+    }
+
+    /**
+     * @return time spent measuring tags and breaking them into lines
+     */
+    public long getMeasureTimeNanos() {
+        return measureTimeNanos;
+    }
+
+    /**
+     * @return number of layout passes
+     */
+    public int getLayoutCount() {
+        return layoutCount;
+    }
+
+    /**
+     * @return time spent placing the tag views
+     */
+    public long getLayoutTimeNanos() {
+        return layoutTimeNanos;
+    }
+
+    /**
+     * @return number of passes applying changes of the tag list, including progressive rendering frames
+     */
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * @return time spent creating, binding and attaching tag views
+     */
+    public long getRebuildTimeNanos() {
+        return rebuildTimeNanos;
+    }
+
+    /**
+     * @return number of tag views that had to be created
+     */
+    public int getInflateCount() {
+        return inflateCount;
+    }
+
+    /**
+     * @return time spent creating tag views, part of the rebuild or layout time
+     */
+    public long getInflateTimeNanos() {
+        return inflateTimeNanos;
+    }
+
+    /**
+     * @return number of tag views that were rebound instead of created
+     */
+    public int getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return time spent binding tag items to new and reused tag views, part of the rebuild or layout time
+     */
+    public long getBindTimeNanos() {
+        return bindTimeNanos;
+    }
+
+    /**
+     * @return number of detached tag views dropped because the recycle pool was full
+     */
+    public int getDroppedViewCount() {
+        return droppedViewCount;
+    }
+
+    /**
+     * @return number of text widths this view found in the {@link TextWidthCache}. Lookups of other
+     * views sharing the cache and of background passes are not counted
+     */
+    public int getTextWidthCacheHitCount() {
+        return textWidthCacheHitCount;
+    }
+
+    /**
+     * @return number of text widths that had to be measured while measuring this view
+     */
+    public int getTextWidthCacheMissCount() {
+        return textWidthCacheMissCount;
+    }
+
+    /**
+     * @return number of rebuilds that copied and diffed the whole tag list, instead of
+     * only handling a removed or appended tag
+     */
+    public int getFullRebuildCount() {
+        return fullRebuildCount;
+    }
+
+    /**
+     * @return number of diffs and layouts run on a background thread, each on a copy of the tag list
+     */
+    public int getBackgroundPassCount() {
+        return backgroundPassCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TagViewMetrics{measure=" + measureCount + "/" + measureTimeNanos / 1000 + "us"
+                + ", layout=" + layoutCount + "/" + layoutTimeNanos / 1000 + "us"
+                + ", rebuild=" + rebuildCount + "/" + rebuildTimeNanos / 1000 + "us"
+                + ", inflated=" + inflateCount + "/" + inflateTimeNanos / 1000 + "us"
+                + ", reused=" + reuseCount
+                + ", bind=" + bindTimeNanos / 1000 + "us"
+                + ", dropped=" + droppedViewCount
+                + ", textWidthCacheHits=" + textWidthCacheHitCount
+                + ", textWidthCacheMisses=" + textWidthCacheMissCount
+                + ", fullRebuilds=" + fullRebuildCount
+                + ", backgroundPasses=" + backgroundPassCount
+                + '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.cunoraz.tagview;
+
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of tag item views that are no longer attached to a {@link TagView}.
+ * Views taken from the pool are rebound to other tag items instead of creating new ones.
+ */
+class TagViewPool {
+
+    /**
+     * detached views waiting to be reused
+     */
+    private final ArrayList<View> scrapViews = new ArrayList<>();
+
+    /**
+     * maximum number of views kept in the pool
+     */
+    private int maxSize;
+
+    /**
+     * number of requests served from the pool
+     */
+    private int hitCount;
+
+    /**
+     * number of requests that found the pool empty
+     */
+    private int missCount;
+
+    /**
+     * number of released views dropped because the pool was full
+     */
+    private int dropCount;
+
+    TagViewPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * take a view out of the pool
+     *
+     * @return a detached view, or null if the pool is empty and a new view has to be created
+     */
+    View obtain() {
+        int size = scrapViews.size();
+        if (size == 0) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return scrapViews.remove(size - 1);
+    }
+
+    /**
+     * count a view that was rebound in place without going through the pool
+     */
+    void countReuse() {
+        hitCount++;
+    }
+
+    /**
+     * put a detached view back into the pool, the view is dropped if the pool is full
+     *
+     * @param view view removed from its parent
+     */
+    void release(View view) {
+        if (scrapViews.size() < maxSize)
+            scrapViews.add(view);
+        else
+            dropCount++;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        while (scrapViews.size() > maxSize)
+            scrapViews.remove(scrapViews.size() - 1);
+    }
+
+    int size() {
+        return scrapViews.size();
+    }
+
+    int getHitCount() {
+        return hitCount;
+    }
+
+    int getMissCount() {
+        return missCount;
+    }
+
+    int getDropCount() {
+        return dropCount;
+    }
+
+    void resetCounts() {
+        hitCount = 0;
+        missCount = 0;
+        dropCount = 0;
+    }
+
+    void clear() {
+        scrapViews.clear();
+    }
+}
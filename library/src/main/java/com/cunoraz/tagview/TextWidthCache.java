@@ -0,0 +1,194 @@
+package com.cunoraz.tagview;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of text widths keyed by text, text size in pixels and typeface.
+ * One instance is shared by all {@link TagView}s unless a view is given its own.
+ * All methods are thread safe.
+ */
+public class TextWidthCache {
+
+    private static TextWidthCache sharedInstance;
+
+    private final LinkedHashMap<Key, Float> widths;
+
+    /**
+     * key reused for lookups, guarded by this
+     */
+    private final Key lookupKey = new Key();
+
+    private int maxSize;
+
+    private int hitCount;
+
+    private int missCount;
+
+    private int evictionCount;
+
+    public TextWidthCache(int maxSize) {
+        this.maxSize = maxSize;
+        // access order turns the map into an LRU list
+        this.widths = new LinkedHashMap<Key, Float>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Float> eldest) {
+                if (size() > TextWidthCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return cache shared by all tag views of the process
+     */
+    public static synchronized TextWidthCache getSharedInstance() {
+        if (sharedInstance == null)
+            sharedInstance = new TextWidthCache(Constants.DEFAULT_TEXT_WIDTH_CACHE_SIZE);
+        return sharedInstance;
+    }
+
+    /**
+     * width of a text drawn with the given paint, measured only if it is not cached yet
+     *
+     * @param paint paint with the text size and typeface of the text
+     * @param text  text to measure
+     * @return width in pixels
+     */
+    public float measureText(Paint paint, String text) {
+        return measureText(paint, text, null);
+    }
+
+    /**
+     * width of a text like {@link #measureText(Paint, String)}, also counting the lookup for a single view
+     *
+     * @param metrics counters of the measuring view, only touched on the main thread; null to count in this cache only
+     */
+    float measureText(Paint paint, String text, TagViewMetrics metrics) {
+        float textSize = paint.getTextSize();
+        Typeface typeface = paint.getTypeface();
+        synchronized (this) {
+            lookupKey.set(text, textSize, typeface);
+            Float width = widths.get(lookupKey);
+            if (width != null) {
+                hitCount++;
+                if (metrics != null)
+                    metrics.textWidthCacheHitCount++;
+                return width;
+            }
+            missCount++;
+        }
+        if (metrics != null)
+            metrics.textWidthCacheMissCount++;
+        float width = paint.measureText(text);
+        synchronized (this) {
+            widths.put(new Key(text, textSize, typeface), width);
+        }
+        return width;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * set the maximum number of cached widths, least recently used ones are evicted first
+     *
+     * @param maxSize maximum number of entries
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        Iterator<Key> iterator = widths.keySet().iterator();
+        while (widths.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    public synchronized int size() {
+        return widths.size();
+    }
+
+    /**
+     * @return number of widths found in the cache, for all views sharing it; see {@link TagViewMetrics} for a single view
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of widths that had to be measured, for all views sharing the cache
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return share of lookups served from the cache, between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        int lookups = hitCount + missCount;
+        return lookups == 0 ? 0f : (float) hitCount / lookups;
+    }
+
+    /**
+     * remove all cached widths, statistics are kept
+     */
+    public synchronized void clear() {
+        widths.clear();
+    }
+
+    private static class Key {
+
+        private String text;
+
+        private float textSize;
+
+        private Typeface typeface;
+
+        Key() {
+        }
+
+        Key(String text, float textSize, Typeface typeface) {
+            set(text, textSize, typeface);
+        }
+
+        void set(String text, float textSize, Typeface typeface) {
+            this.text = text;
+            this.textSize = textSize;
+            this.typeface = typeface;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return textSize == key.textSize
+                    && text.equals(key.text)
+                    && (typeface == null ? key.typeface == null : typeface.equals(key.typeface));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            return result;
+        }
+    }
+}
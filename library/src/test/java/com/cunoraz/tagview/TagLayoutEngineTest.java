@@ -0,0 +1,336 @@
+package com.cunoraz.tagview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TagLayoutEngineTest {
+
+    private TagLayoutEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new TagLayoutEngine();
+        engine.setItemMargin(5);
+        engine.setLineMargin(4);
+        engine.setWidthOffset(2);
+    }
+
+    private static TagLayoutEngine.Measurer sizes(final int[] widths, final int[] heights) {
+        return new TagLayoutEngine.Measurer() {
+            @Override
+            public int getWidth(int index) {
+                return widths[index];
+            }
+
+            @Override
+            public int getHeight(int index) {
+                return heights[index];
+            }
+        };
+    }
+
+    @Test
+    public void breaksLinesWhenWidthIsUsedUp() {
+        // 30 + 5 + 30 + 5 + 30 = 100, the offset of 2 pushes the third tag to the next line
+        engine.layout(sizes(new int[]{30, 30, 30, 40}, new int[]{10, 10, 10, 10}), 4, 100);
+
+        assertEquals(2, engine.getLineCount());
+        assertArrayEquals(new int[]{0, 35, 0, 35}, Arrays.copyOf(engine.getLefts(), 4));
+        assertArrayEquals(new int[]{0, 0, 14, 14}, Arrays.copyOf(engine.getTops(), 4));
+        assertArrayEquals(new int[]{0, 0, 1, 1}, Arrays.copyOf(engine.getItemLines(), 4));
+        assertEquals(2, engine.getLineStarts()[1]);
+        assertEquals(75, engine.getContentWidth());
+        assertEquals(28, engine.getContentHeight());
+    }
+
+    @Test
+    public void unboundedWidthKeepsOneLine() {
+        engine.layout(sizes(new int[]{30, 30, 30}, new int[]{10, 10, 10}), 3, TagLayoutEngine.UNBOUNDED);
+
+        assertEquals(1, engine.getLineCount());
+        assertEquals(70, engine.getLefts()[2]);
+        assertEquals(100, engine.getContentWidth());
+    }
+
+    @Test
+    public void tooWideTagGetsItsOwnLine() {
+        engine.layout(sizes(new int[]{200, 10}, new int[]{10, 10}), 2, 100);
+
+        assertEquals(2, engine.getLineCount());
+        assertEquals(0, engine.getLefts()[0]);
+        assertEquals(0, engine.getLefts()[1]);
+    }
+
+    @Test
+    public void lineHeightFollowsTallestTag() {
+        engine.setCenterVertical(true);
+        engine.layout(sizes(new int[]{10, 10, 10}, new int[]{10, 20, 10}), 3, 30);
+
+        assertEquals(2, engine.getLineCount());
+        assertEquals(5, engine.getTops()[0]);
+        assertEquals(0, engine.getTops()[1]);
+        assertEquals(24, engine.getLineTops()[1]);
+    }
+
+    @Test
+    public void emptyLayout() {
+        engine.layout(sizes(new int[0], new int[0]), 0, 100);
+
+        assertEquals(0, engine.getLineCount());
+        assertEquals(0, engine.getContentHeight());
+    }
+
+    @Test
+    public void goneTagsTakeNoSpace() {
+        int gone = TagLayoutEngine.GONE;
+        engine.layout(sizes(new int[]{gone, 30, gone, 30, 30, gone}, new int[]{10, 10, 10, 10, 10, 10}), 6, 100);
+
+        assertEquals(2, engine.getLineCount());
+        assertArrayEquals(new int[]{0, 0, 30, 35, 0, 30}, Arrays.copyOf(engine.getLefts(), 6));
+        assertArrayEquals(new int[]{0, 0, 0, 0, 1, 1}, Arrays.copyOf(engine.getItemLines(), 6));
+        assertEquals(0, engine.getWidths()[2]);
+        assertEquals(65, engine.getContentWidth());
+    }
+
+    @Test
+    public void allTagsGoneHasNoLines() {
+        int gone = TagLayoutEngine.GONE;
+        engine.layout(sizes(new int[]{gone, gone}, new int[]{10, 10}), 2, 100);
+
+        assertEquals(0, engine.getLineCount());
+        assertEquals(0, engine.getContentHeight());
+    }
+
+    @Test
+    public void reflowAfterRemoveMatchesFullLayout() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            int count = 1 + random.nextInt(60);
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = 5 + random.nextInt(60);
+                heights[i] = 8 + random.nextInt(6);
+            }
+            int removed = random.nextInt(count);
+            int[] newWidths = remove(widths, removed);
+            int[] newHeights = remove(heights, removed);
+
+            engine.setCenterVertical(random.nextBoolean());
+            engine.layout(sizes(widths, heights), count, 100);
+            engine.reflow(sizes(newWidths, newHeights), count - 1, 100, removed, 1);
+
+            TagLayoutEngine expected = new TagLayoutEngine();
+            expected.setItemMargin(5);
+            expected.setLineMargin(4);
+            expected.setWidthOffset(2);
+            expected.setCenterVertical(engine.isCenterVertical());
+            expected.layout(sizes(newWidths, newHeights), count - 1, 100);
+            assertSameLayout(expected, engine);
+        }
+    }
+
+    @Test
+    public void reflowStopsAtFirstUnchangedLine() {
+        // lines of two tags each, removing a tag of the first line pulls one tag up per line
+        // until the lone tag of the third line absorbs it
+        int[] widths = {40, 40, 40, 40, 90, 40, 40};
+        engine.layout(sizes(widths, new int[7]), 7, 100);
+        assertEquals(4, engine.getLineCount());
+
+        engine.reflow(sizes(remove(widths, 0), new int[6]), 6, 100, 0, 1);
+
+        assertEquals(4, engine.getLineCount());
+        assertEquals(0, engine.getChangedStart());
+        // the third line starts with the wide tag again, it and the line after it are only shifted
+        assertEquals(3, engine.getChangedEnd());
+        assertArrayEquals(new int[]{0, 2, 3, 4}, Arrays.copyOf(engine.getLineStarts(), 4));
+    }
+
+    @Test
+    public void layoutFromChangedTagMatchesFullLayout() {
+        Random random = new Random(23);
+        for (int run = 0; run < 200; run++) {
+            int count = 1 + random.nextInt(60);
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = random.nextInt(10) == 0 ? TagLayoutEngine.GONE : 5 + random.nextInt(60);
+                heights[i] = 8 + random.nextInt(6);
+            }
+            // tags from a random position on are replaced by a list of another length
+            int firstChanged = random.nextInt(count + 1);
+            int newCount = firstChanged + random.nextInt(40);
+            int[] newWidths = Arrays.copyOf(widths, newCount);
+            int[] newHeights = Arrays.copyOf(heights, newCount);
+            for (int i = firstChanged; i < newCount; i++) {
+                newWidths[i] = 5 + random.nextInt(60);
+                newHeights[i] = 8 + random.nextInt(6);
+            }
+
+            engine.setCenterVertical(random.nextBoolean());
+            engine.layout(sizes(widths, heights), count, 100);
+            engine.layoutFrom(sizes(newWidths, newHeights), newCount, 100, firstChanged);
+
+            TagLayoutEngine expected = new TagLayoutEngine();
+            expected.setItemMargin(5);
+            expected.setLineMargin(4);
+            expected.setWidthOffset(2);
+            expected.setCenterVertical(engine.isCenterVertical());
+            expected.layout(sizes(newWidths, newHeights), newCount, 100);
+            assertSameLayout(expected, engine);
+        }
+    }
+
+    @Test
+    public void appendMatchesFullLayout() {
+        Random random = new Random(7);
+        int[] widths = new int[300];
+        int[] heights = new int[300];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = 5 + random.nextInt(120);
+            heights[i] = 8 + random.nextInt(6);
+        }
+        engine.setCenterVertical(true);
+        TagLayoutEngine expected = new TagLayoutEngine();
+        expected.setItemMargin(5);
+        expected.setLineMargin(4);
+        expected.setWidthOffset(2);
+        expected.setCenterVertical(true);
+
+        engine.layout(sizes(widths, heights), 1, 100);
+        for (int count = 2; count <= widths.length; count += 1 + random.nextInt(3)) {
+            engine.append(sizes(widths, heights), count, 100);
+            expected.layout(sizes(widths, heights), count, 100);
+            assertSameLayout(expected, engine);
+        }
+    }
+
+    @Test
+    public void resizeMatchesFullLayout() {
+        Random random = new Random(11);
+        int[] widths = new int[200];
+        int[] heights = new int[200];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = random.nextInt(10) == 0 ? TagLayoutEngine.GONE : 5 + random.nextInt(60);
+            heights[i] = 8 + random.nextInt(6);
+        }
+        TagLayoutEngine expected = new TagLayoutEngine();
+        expected.setItemMargin(5);
+        expected.setLineMargin(4);
+        expected.setWidthOffset(2);
+
+        engine.layout(sizes(widths, heights), widths.length, 300);
+        for (int pass = 0; pass < 50; pass++) {
+            int availableWidth = random.nextInt(8) == 0 ? TagLayoutEngine.UNBOUNDED : 70 + random.nextInt(400);
+            engine.resize(availableWidth);
+            expected.layout(sizes(widths, heights), widths.length, availableWidth);
+            assertSameLayout(expected, engine);
+        }
+    }
+
+    @Test
+    public void resizeWithSameBreaksChangesNothing() {
+        int[] widths = {30, 30, 30, 30};
+        int[] heights = {10, 10, 10, 10};
+        engine.layout(sizes(widths, heights), 4, 100);
+        assertEquals(2, engine.getLineCount());
+
+        // the first line needs 67 pixels, with the third tag 102
+        assertFalse(engine.resize(90));
+        assertEquals(engine.getChangedStart(), engine.getChangedEnd());
+        assertEquals(90, engine.getAvailableWidth());
+
+        // all tags need 137 pixels
+        assertTrue(engine.resize(140));
+        assertEquals(1, engine.getLineCount());
+        assertEquals(4, engine.getChangedEnd());
+    }
+
+    @Test
+    public void maxLinesEndsWithOverflowChip() {
+        final int[] widths = {30, 30, 30, 30, 30, 30, 30, 30};
+        engine.setMaxLines(2, chip(20, 12));
+        engine.layout(new TagLayoutEngine.Measurer() {
+            @Override
+            public int getWidth(int index) {
+                // tags after the one that did not fit are never measured
+                assertTrue(index <= 4);
+                return widths[index];
+            }
+
+            @Override
+            public int getHeight(int index) {
+                return 10;
+            }
+        }, widths.length, 100);
+
+        assertEquals(2, engine.getLineCount());
+        assertEquals(4, engine.getOverflowStart());
+        assertEquals(70, engine.getOverflowLeft());
+        assertEquals(14, engine.getOverflowTop());
+        assertEquals(90, engine.getLineWidths()[1]);
+        assertEquals(12, engine.getLineHeights()[1]);
+        assertEquals(0, engine.getWidths()[5]);
+    }
+
+    @Test
+    public void overflowChipReplacesTagsThatLeaveNoRoom() {
+        int[] widths = {30, 30, 30, 30, 30};
+        int[] heights = {10, 10, 10, 10, 10};
+        engine.setMaxLines(1, chip(40, 10));
+        engine.layout(sizes(widths, heights), widths.length, 100);
+
+        assertEquals(1, engine.getLineCount());
+        assertEquals(1, engine.getOverflowStart());
+        assertEquals(35, engine.getOverflowLeft());
+        assertEquals(0, engine.getWidths()[1]);
+
+        engine.setMaxLines(0, null);
+        engine.layout(sizes(widths, heights), widths.length, 100);
+        assertEquals(widths.length, engine.getOverflowStart());
+        assertEquals(0, engine.getOverflowWidth());
+    }
+
+    private static TagLayoutEngine.OverflowMeasurer chip(final int width, final int height) {
+        return new TagLayoutEngine.OverflowMeasurer() {
+            @Override
+            public int getWidth(int overflowStart) {
+                return width;
+            }
+
+            @Override
+            public int getHeight(int overflowStart) {
+                return height;
+            }
+        };
+    }
+
+    private static int[] remove(int[] values, int index) {
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static void assertSameLayout(TagLayoutEngine expected, TagLayoutEngine actual) {
+        int count = expected.getItemCount();
+        int lines = expected.getLineCount();
+        assertEquals(count, actual.getItemCount());
+        assertEquals(lines, actual.getLineCount());
+        assertArrayEquals(Arrays.copyOf(expected.getLefts(), count), Arrays.copyOf(actual.getLefts(), count));
+        assertArrayEquals(Arrays.copyOf(expected.getTops(), count), Arrays.copyOf(actual.getTops(), count));
+        assertArrayEquals(Arrays.copyOf(expected.getWidths(), count), Arrays.copyOf(actual.getWidths(), count));
+        assertArrayEquals(Arrays.copyOf(expected.getItemLines(), count), Arrays.copyOf(actual.getItemLines(), count));
+        assertArrayEquals(Arrays.copyOf(expected.getLineStarts(), lines), Arrays.copyOf(actual.getLineStarts(), lines));
+        assertArrayEquals(Arrays.copyOf(expected.getLineTops(), lines), Arrays.copyOf(actual.getLineTops(), lines));
+        assertEquals(expected.getContentWidth(), actual.getContentWidth());
+        assertEquals(expected.getContentHeight(), actual.getContentHeight());
+        assertEquals(expected.getOverflowStart(), actual.getOverflowStart());
+    }
+}
@@ -0,0 +1,500 @@
+package com.cunoraz.tagview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ceilings on inflated views, rebuild passes and allocation-heavy events of common operations,
+ * so that a change bringing back full rebuilds fails the build. Changes are applied in batches,
+ * which rebuild right away instead of on the next frame.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TagViewPerformanceTest {
+
+    private static final int TAG_COUNT = 200;
+
+    private static final int WIDTH = 1080;
+
+    private Context context;
+
+    private TagView tagView;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        tagView = new TagView(context);
+        tagView.setRecyclePoolSize(TAG_COUNT);
+        tagView.beginBatch();
+        tagView.add(createTags("tag", TAG_COUNT));
+        tagView.endBatch();
+        layout(WIDTH);
+    }
+
+    @Test
+    public void bulkAddInflatesEachTagOnce() {
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(TAG_COUNT, tagView.getChildCount());
+        assertEquals(TAG_COUNT, metrics.getInflateCount());
+        assertEquals(1, metrics.getRebuildCount());
+        assertEquals(1, metrics.getFullRebuildCount());
+        assertEquals(0, metrics.getBackgroundPassCount());
+        // creating and binding the views are timed apart
+        assertTrue(metrics.getInflateTimeNanos() > 0);
+        assertTrue(metrics.getBindTimeNanos() > 0);
+    }
+
+    @Test
+    public void appendOnlyCreatesViewsForNewTags() {
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.add(new TagItem(context, "appended"));
+        tagView.add(new TagItem(context, "appended too"));
+        tagView.endBatch();
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(TAG_COUNT + 2, tagView.getChildCount());
+        assertEquals(2, metrics.getInflateCount());
+        assertEquals(1, metrics.getRebuildCount());
+        assertEquals(0, metrics.getFullRebuildCount());
+        assertEquals(1, metrics.getMeasureCount());
+    }
+
+    @Test
+    public void removeDropsOnlyItsView() {
+        View kept = tagView.getChildAt(TAG_COUNT - 1);
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.remove(10);
+        tagView.endBatch();
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(TAG_COUNT - 1, tagView.getChildCount());
+        assertEquals(kept, tagView.getChildAt(TAG_COUNT - 2));
+        assertEquals(0, metrics.getInflateCount());
+        assertEquals(0, metrics.getReuseCount());
+        assertEquals(0, metrics.getFullRebuildCount());
+    }
+
+    @Test
+    public void replacingTagsReusesViews() {
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.add(createTags("other", TAG_COUNT));
+        tagView.endBatch();
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(TAG_COUNT, tagView.getChildCount());
+        assertEquals(0, metrics.getInflateCount());
+        assertEquals(TAG_COUNT, metrics.getReuseCount());
+        assertEquals(1, metrics.getFullRebuildCount());
+    }
+
+    @Test
+    public void rebindSharesBackgroundDrawables() {
+        TagDrawableCache drawableCache = TagDrawableCache.getSharedInstance();
+        View child = tagView.getChildAt(0);
+        Object background = child.getBackground();
+        int hits = drawableCache.getHitCount();
+        int misses = drawableCache.getMissCount();
+        tagView.beginBatch();
+        tagView.add(createTags("other", TAG_COUNT));
+        tagView.endBatch();
+
+        // a view bound to the same style keeps its background, the cache is not even asked
+        assertEquals(background, child.getBackground());
+        assertEquals(hits, drawableCache.getHitCount());
+        assertEquals(misses, drawableCache.getMissCount());
+
+        List<TagItem> tagItems = createTags("styled", TAG_COUNT);
+        for (TagItem tagItem : tagItems)
+            tagItem.setLayoutColor(0xff123456);
+        tagView.beginBatch();
+        tagView.add(tagItems);
+        tagView.endBatch();
+
+        // the new style builds its StateListDrawable and GradientDrawables once, all other tags share them
+        assertEquals(misses + 1, drawableCache.getMissCount());
+        assertEquals(hits + TAG_COUNT - 1, drawableCache.getHitCount());
+    }
+
+    @Test
+    public void insertLaysOutLinesFromChangedTag() {
+        View first = tagView.getChildAt(0);
+        List<TagItem> tagItems = new ArrayList<>(tagView.getTagItemList());
+        tagItems.add(TAG_COUNT / 2, new TagItem(context, "inserted"));
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.add(tagItems);
+        tagView.endBatch();
+        layout(WIDTH);
+
+        // only the inserted tag gets a view, the lines from it on match a full layout
+        TagView expected = new TagView(context);
+        expected.beginBatch();
+        expected.add(new ArrayList<>(tagItems));
+        expected.endBatch();
+        expected.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        expected.layout(0, 0, expected.getMeasuredWidth(), expected.getMeasuredHeight());
+        assertEquals(1, tagView.getMetrics().getInflateCount());
+        assertEquals(first, tagView.getChildAt(0));
+        assertEquals(expected.getMeasuredHeight(), tagView.getMeasuredHeight());
+        for (int i = 0; i <= TAG_COUNT; i++) {
+            assertEquals(expected.getChildAt(i).getLeft(), tagView.getChildAt(i).getLeft());
+            assertEquals(expected.getChildAt(i).getTop(), tagView.getChildAt(i).getTop());
+        }
+    }
+
+    @Test
+    public void moveReattachesViewOfTagWithoutKey() {
+        View moved = tagView.getChildAt(0);
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.move(0, TAG_COUNT - 1);
+        tagView.endBatch();
+        layout(WIDTH);
+
+        // items without key are matched by instance, not by position
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(moved, tagView.getChildAt(TAG_COUNT - 1));
+        assertEquals("tag0", getText(moved));
+        assertEquals(0, metrics.getInflateCount());
+        assertEquals(0, metrics.getReuseCount());
+    }
+
+    @Test
+    public void unchangedTagsAreNotBoundAgain() {
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.add(new ArrayList<>(tagView.getTagItemList()));
+        tagView.endBatch();
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(0, metrics.getInflateCount());
+        assertEquals(0, metrics.getReuseCount());
+    }
+
+    @Test
+    public void filterOnlyHidesViews() {
+        tagView.resetMetrics();
+        tagView.setFilter("tag1");
+        layout(WIDTH);
+        int visible = countVisibleChildren();
+        tagView.setFilter("tag12");
+        layout(WIDTH);
+        tagView.setFilter("tag1");
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        // tag1, tag10 - tag19 and tag100 - tag199
+        assertEquals(111, visible);
+        assertEquals(visible, countVisibleChildren());
+        assertEquals(TAG_COUNT, tagView.getChildCount());
+        assertEquals(0, metrics.getInflateCount());
+        assertEquals(0, metrics.getRebuildCount());
+
+        tagView.setFilter(null);
+        layout(WIDTH);
+        assertEquals(TAG_COUNT, countVisibleChildren());
+    }
+
+    @Test
+    public void widthChangeDoesNotRebuild() {
+        tagView.resetMetrics();
+        layout(WIDTH / 2);
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(2, metrics.getMeasureCount());
+        assertEquals(0, metrics.getRebuildCount());
+        assertEquals(0, metrics.getInflateCount());
+        // lines are broken again from the sizes of the last pass, no tag is measured
+        assertEquals(0, metrics.getTextWidthCacheHitCount() + metrics.getTextWidthCacheMissCount());
+    }
+
+    @Test
+    public void paddingChangeMovesViewsWithoutBreakingLines() {
+        View child = tagView.getChildAt(TAG_COUNT - 1);
+        int left = child.getLeft();
+        int top = child.getTop();
+        // the available width stays the same, the lines break like before
+        tagView.setPadding(20, 30, 0, 0);
+        layout(WIDTH + 20);
+        tagView.setPadding(0, 10, 20, 0);
+        layout(WIDTH + 20);
+
+        assertEquals(left, child.getLeft());
+        assertEquals(top + 10, child.getTop());
+    }
+
+    @Test
+    public void metricsCountOnlyOwnTextWidthLookups() {
+        final List<TagViewMetrics> reported = new ArrayList<>();
+        tagView.setOnMetricsListener(new TagView.OnMetricsListener() {
+            @Override
+            public void onMetrics(TagView view, TagViewMetrics metrics) {
+                reported.add(metrics);
+            }
+        });
+        tagView.resetMetrics();
+        // another view measuring the same texts in the shared cache
+        TagView other = new TagView(context);
+        other.beginBatch();
+        other.add(createTags("tag", TAG_COUNT));
+        other.endBatch();
+        other.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        tagView.beginBatch();
+        tagView.add(new TagItem(context, "appended"));
+        tagView.endBatch();
+        layout(WIDTH);
+        layout(WIDTH / 2);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(1, metrics.getTextWidthCacheHitCount() + metrics.getTextWidthCacheMissCount());
+        // the listener gets one instance, filled again for every layout pass
+        assertEquals(2, reported.size());
+        assertTrue(reported.get(0) == reported.get(1));
+        assertEquals(2, reported.get(1).getLayoutCount());
+    }
+
+    @Test
+    public void textPaddingRebindsViewsWithoutRebuild() {
+        tagView.setFilter("tag1");
+        layout(WIDTH);
+        View child = tagView.getChildAt(TAG_COUNT - 1);
+        int width = child.getMeasuredWidth();
+        int height = child.getMeasuredHeight();
+        tagView.resetMetrics();
+        int paddingLeft = tagView.getTextPaddingLeft();
+        int paddingTop = tagView.getTextPaddingTop();
+        tagView.setTextPaddingLeft(20);
+        tagView.setTextPaddingTop(20);
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(width + tagView.getTextPaddingLeft() - paddingLeft, child.getMeasuredWidth());
+        assertEquals(height + tagView.getTextPaddingTop() - paddingTop, child.getMeasuredHeight());
+        assertEquals(0, metrics.getRebuildCount());
+        assertEquals(0, metrics.getInflateCount());
+        // tags hidden by the filter stay hidden
+        assertEquals(111, countVisibleChildren());
+    }
+
+    @Test
+    public void addAsyncDiffsTagViewsInItsBackgroundPass() throws InterruptedException {
+        // even short lists would be diffed on another background pass by drawTags
+        tagView.setAsyncDiffThreshold(1);
+        ShadowLooper.pauseMainLooper();
+        tagView.resetMetrics();
+        tagView.addAsync(createTags("async", TAG_COUNT));
+        awaitBackground();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(1, metrics.getBackgroundPassCount());
+        assertEquals(1, metrics.getFullRebuildCount());
+        assertEquals(0, metrics.getInflateCount());
+        assertEquals(TAG_COUNT, metrics.getReuseCount());
+        assertEquals(TAG_COUNT, tagView.getChildCount());
+        for (int i = 0; i < TAG_COUNT; i++)
+            assertEquals("async" + i, getText(tagView.getChildAt(i)));
+    }
+
+    @Test
+    public void addAsyncMeasuresTextsInItsBackgroundPass() throws InterruptedException {
+        for (boolean canvas : new boolean[]{false, true}) {
+            tagView.beginBatch();
+            tagView.setVirtualized(!canvas);
+            tagView.setCanvasRendering(canvas);
+            tagView.endBatch();
+            layout(WIDTH);
+            ShadowLooper.pauseMainLooper();
+            tagView.resetMetrics();
+            tagView.addAsync(createTags(canvas ? "drawn" : "virtual", TAG_COUNT));
+            awaitBackground();
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+            layout(WIDTH);
+
+            // the main thread only breaks the lines, from the sizes measured in the background
+            TagViewMetrics metrics = tagView.getMetrics();
+            assertEquals(1, metrics.getBackgroundPassCount());
+            assertEquals(0, metrics.getFullRebuildCount());
+            assertEquals(0, metrics.getTextWidthCacheHitCount() + metrics.getTextWidthCacheMissCount());
+            assertEquals(TAG_COUNT, tagView.getTagItemList().size());
+            assertTrue(tagView.getMeasuredHeight() > 0);
+        }
+    }
+
+    @Test
+    public void addAsyncStopsProgressiveRendering() throws InterruptedException {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TagView progressive = new TagView(activity);
+        progressive.setProgressiveRendering(true);
+        // a single tag per frame
+        progressive.setFrameBudgetMillis(0);
+        activity.setContentView(progressive);
+        // frames only run when the looper is told to
+        ShadowLooper.pauseMainLooper();
+        progressive.beginBatch();
+        progressive.add(createTags("tag", TAG_COUNT));
+        progressive.endBatch();
+        assertEquals(1, progressive.getChildCount());
+
+        // the background pass is held back while frames are drawn
+        final CountDownLatch latch = new CountDownLatch(1);
+        TagExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        progressive.addAsync(createTags("async", 10));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        // the old tags are not rendered any further, and none of the new list is appended to them
+        assertEquals(1, progressive.getChildCount());
+        assertEquals("tag0", getText(progressive.getChildAt(0)));
+
+        latch.countDown();
+        awaitBackground();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(10, progressive.getChildCount());
+        for (int i = 0; i < 10; i++)
+            assertEquals("async" + i, getText(progressive.getChildAt(i)));
+    }
+
+    @Test
+    public void canvasRenderingCreatesNoViews() {
+        tagView.setCanvasRendering(true);
+        tagView.resetMetrics();
+        tagView.beginBatch();
+        tagView.add(createTags("drawn", TAG_COUNT));
+        tagView.endBatch();
+        layout(WIDTH);
+
+        TagViewMetrics metrics = tagView.getMetrics();
+        assertEquals(0, tagView.getChildCount());
+        assertEquals(0, metrics.getInflateCount());
+        assertTrue(tagView.getMeasuredHeight() > 0);
+    }
+
+    @Test
+    public void canvasRenderingDrawsOverflowChip() {
+        tagView.setCanvasRendering(true);
+        tagView.setMaxLines(2);
+        tagView.beginBatch();
+        tagView.add(createTags("drawn", TAG_COUNT));
+        tagView.endBatch();
+        layout(WIDTH);
+
+        // the "+N" chip is drawn like the tags instead of being added as a child view
+        assertEquals(0, tagView.getChildCount());
+        TagLayoutEngine engine = tagView.getLayoutEngine();
+        int overflowStart = engine.getOverflowStart();
+        assertTrue(overflowStart > 0 && overflowStart < TAG_COUNT);
+        assertTrue(engine.getOverflowWidth() > 0 && engine.getOverflowHeight() > 0);
+
+        // a tap inside the chip reports the number of tags it stands for
+        final int[] clickedCount = {-1};
+        tagView.setOnOverflowChipClickListener(new TagView.OnOverflowChipClickListener() {
+            @Override
+            public void onOverflowChipClick(TagView view, int overflowCount) {
+                clickedCount[0] = overflowCount;
+            }
+        });
+        float x = tagView.getPaddingLeft() + engine.getOverflowLeft() + engine.getOverflowWidth() / 2f;
+        float y = tagView.getPaddingTop() + engine.getOverflowTop() + engine.getOverflowHeight() / 2f;
+        long time = SystemClock.uptimeMillis();
+        tagView.onTouchEvent(MotionEvent.obtain(time, time, MotionEvent.ACTION_DOWN, x, y, 0));
+        tagView.onTouchEvent(MotionEvent.obtain(time, time + 10, MotionEvent.ACTION_UP, x, y, 0));
+        assertEquals(TAG_COUNT - overflowStart, clickedCount[0]);
+    }
+
+    @Test
+    public void horizontalScrollableOnlyCreatesVisibleViews() {
+        tagView.resetMetrics();
+        // switching to a single line renders the tags again
+        tagView.beginBatch();
+        tagView.setHorizontalScrollable(true);
+        tagView.endBatch();
+        layout(WIDTH);
+
+        // without a parent, the bounds of the view are its visible part
+        int end = WIDTH + tagView.getPrefetchMargin();
+        int count = tagView.getChildCount();
+        assertTrue(count > 0 && count < TAG_COUNT);
+        for (int i = 0; i < count; i++)
+            assertEquals("tag" + i, getText(tagView.getChildAt(i)));
+        // the views end with the tag reaching over the end of the viewport and its margin
+        View last = tagView.getChildAt(count - 1);
+        assertTrue(last.getLeft() <= end);
+        assertTrue(last.getRight() > end);
+        // the views are taken from the pool
+        assertEquals(0, tagView.getMetrics().getInflateCount());
+    }
+
+    private List<TagItem> createTags(String prefix, int count) {
+        List<TagItem> tagItems = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            tagItems.add(new TagItem(context, prefix + i));
+        return tagItems;
+    }
+
+    private void layout(int width) {
+        tagView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        tagView.layout(0, 0, tagView.getMeasuredWidth(), tagView.getMeasuredHeight());
+    }
+
+    /**
+     * wait until the tasks submitted to the background thread so far have run
+     */
+    private static void awaitBackground() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        TagExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    private static CharSequence getText(View tagLayout) {
+        return ((TagItemView) tagLayout).getTextView().getText().toString();
+    }
+
+    private int countVisibleChildren() {
+        int count = 0;
+        for (int i = 0; i < tagView.getChildCount(); i++) {
+            if (tagView.getChildAt(i).getVisibility() == View.VISIBLE)
+                count++;
+        }
+        return count;
+    }
+}